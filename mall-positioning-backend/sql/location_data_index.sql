@@ -0,0 +1,4 @@
+-- 历史轨迹按设备 + 时间范围查询、按 (create_time, id) 续页分页、流式导出共用的联合索引
+-- 同一设备内按时间有序，续页条件 (create_time, id) > (?, ?) 直接定位到索引中的起点，每页开销与翻页深度无关
+ALTER TABLE location_data
+    ADD INDEX idx_device_time_id (device_id, create_time, id);
@@ -0,0 +1,24 @@
+-- location_data 按 create_time 做 RANGE COLUMNS 分区（按月），配合 LocationPartitionManager 自动维护
+-- 1. MySQL 要求分区键包含在每个唯一键中，主键改为 (id, create_time)；id 仍自增，唯一性不变
+-- 2. p_history 存放上线分区前的历史数据，不会被自动清理，归档后手动删除
+-- 3. p_future 兜底，自动维护通过 REORGANIZE p_future 在其前面追加新分区
+-- 分区名 pYYYYMM（按月）/ pYYYYMMDD（按天）表示该周期内的数据，粒度需与 location.partition.granularity 一致
+
+ALTER TABLE location_data MODIFY create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+ALTER TABLE location_data
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, create_time);
+
+ALTER TABLE location_data
+    PARTITION BY RANGE COLUMNS (create_time) (
+        PARTITION p_history VALUES LESS THAN ('2026-10-01 00:00:00'),
+        PARTITION p202610 VALUES LESS THAN ('2026-11-01 00:00:00'),
+        PARTITION p202611 VALUES LESS THAN ('2026-12-01 00:00:00'),
+        PARTITION p202612 VALUES LESS THAN ('2027-01-01 00:00:00'),
+        PARTITION p_future VALUES LESS THAN (MAXVALUE)
+    );
+
+-- 过期分区归档表（location.partition.archive=true 时，删除分区前先把数据搬到这里）
+CREATE TABLE IF NOT EXISTS location_data_archive LIKE location_data;
+ALTER TABLE location_data_archive REMOVE PARTITIONING;
@@ -0,0 +1,35 @@
+-- 位置统计汇总（按小时 / 按天），由 LocationRollupJob 按 location_data.id 水位增量维护，依赖文件末尾为 location_data 追加的 insert_time 列
+CREATE TABLE IF NOT EXISTS location_rollup
+(
+    device_id       VARCHAR(64)  NOT NULL COMMENT '设备ID',
+    granularity     VARCHAR(8)   NOT NULL COMMENT '粒度 HOUR / DAY',
+    bucket_start    DATETIME     NOT NULL COMMENT '周期起始时间',
+    point_count     INT          NOT NULL DEFAULT 0 COMMENT '点数',
+    min_lat         DOUBLE       NOT NULL COMMENT '外包框最小纬度',
+    max_lat         DOUBLE       NOT NULL COMMENT '外包框最大纬度',
+    min_lon         DOUBLE       NOT NULL COMMENT '外包框最小经度',
+    max_lon         DOUBLE       NOT NULL COMMENT '外包框最大经度',
+    distance_meters DOUBLE       NOT NULL DEFAULT 0 COMMENT '移动距离（米）',
+    max_speed_mps   DOUBLE       NOT NULL DEFAULT 0 COMMENT '最大速度（米/秒）',
+    fence_seconds   BIGINT       NOT NULL DEFAULT 0 COMMENT '在围栏内的时长（秒）',
+    first_time      DATETIME     NOT NULL COMMENT '周期内第一个点的时间',
+    last_time       DATETIME     NOT NULL COMMENT '周期内最后一个点的时间',
+    last_lat        DOUBLE       NOT NULL COMMENT '周期内最后一个点的纬度',
+    last_lon        DOUBLE       NOT NULL COMMENT '周期内最后一个点的经度',
+    update_time     DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (device_id, granularity, bucket_start)
+) COMMENT '位置统计汇总';
+
+-- 汇总任务水位：记录已处理到的 location_data.id
+CREATE TABLE IF NOT EXISTS location_rollup_watermark
+(
+    name        VARCHAR(32) NOT NULL PRIMARY KEY,
+    last_id     BIGINT      NOT NULL DEFAULT 0,
+    update_time DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) COMMENT '位置汇总水位';
+
+-- 入库时间（数据库时钟），汇总任务据此判断一行是否已稳定，不能用设备上报的 create_time
+ALTER TABLE location_data
+    ADD COLUMN insert_time DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '入库时间';
+-- 已按 location_data_partition.sql 建过归档表时同步追加，保持 SELECT * 归档的列一致（之后再建的归档表会自动带上该列）：
+-- ALTER TABLE location_data_archive ADD COLUMN insert_time DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '入库时间';
@@ -0,0 +1,17 @@
+-- 停留点：StayPointDetector 在线识别，停留开始时写入，进行中和结束时按 (device_id, arrived_at) 更新
+CREATE TABLE IF NOT EXISTS stay_point
+(
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id        VARCHAR(64)    NOT NULL COMMENT '设备ID',
+    latitude         DECIMAL(10, 7) NOT NULL COMMENT '停留中心纬度',
+    longitude        DECIMAL(10, 7) NOT NULL COMMENT '停留中心经度',
+    arrived_at       DATETIME       NOT NULL COMMENT '到达时间',
+    left_at          DATETIME       NOT NULL COMMENT '离开时间',
+    duration_seconds BIGINT         NOT NULL COMMENT '停留时长（秒）',
+    point_count      INT            NOT NULL COMMENT '停留期间的点数',
+    create_time      DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_device_arrived (device_id, arrived_at)
+) COMMENT '停留点';
+
+-- alert.type 改为字符串列，新增 DWELL（长时间停留报警）等类型时不必再改表结构；原有的 ENUM 值原样保留
+ALTER TABLE alert MODIFY type VARCHAR(32) NOT NULL COMMENT '报警类型';
@@ -3,6 +3,7 @@ package com.project.mapapp.config.RabbitMQ;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.manager.DeviceGuardianResolver;
 import com.project.mapapp.mapper.ApplicationMapper;
 import com.project.mapapp.model.dto.application.ApplicationMessage;
 import com.project.mapapp.model.entity.Application;
@@ -41,6 +42,9 @@ public class ApplicationConsumer {
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
+    @Autowired
+    private DeviceGuardianResolver deviceGuardianResolver;
+
     private static final int MAX_RETRY_COUNT = 3;
 
     @RabbitListener(queues = "apply_queue")
@@ -100,6 +104,7 @@ public class ApplicationConsumer {
 
         // 更新申请状态
         applicationMapper.updateById(application);
+        deviceGuardianResolver.invalidateDevice(message.getWardDeviceId());
     }
 
     private void handleValidDevice(ApplicationMessage message, Application application, String applicationId) {
@@ -1,6 +1,7 @@
 package com.project.mapapp.config;
 
 import com.project.mapapp.websocket.GpsWebSocketHandler;
+import com.project.mapapp.websocket.LocationFrameCodec;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -20,9 +21,12 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // 客户端声明二进制子协议时位置改为紧凑二进制帧，未声明仍为 JSON 文本
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(LocationFrameCodec.SUBPROTOCOL);
         registry.addHandler(gpsWebSocketHandler, "/gps-websocket")
                 .setAllowedOrigins("*") // 允许所有来源
-                .setHandshakeHandler(new DefaultHandshakeHandler())
+                .setHandshakeHandler(handshakeHandler)
                 .addInterceptors(new HttpSessionHandshakeInterceptor());
     }
 }
\ No newline at end of file
@@ -21,7 +21,6 @@ import com.project.mapapp.model.entity.Application;
 import com.project.mapapp.model.entity.Device;
 import com.project.mapapp.model.entity.User;
 import com.project.mapapp.model.entity.Ward;
-import com.project.mapapp.model.enums.ApplicationStatus;
 import com.project.mapapp.service.DeviceService;
 import com.project.mapapp.service.UserService;
 import org.springframework.beans.BeanUtils;
@@ -97,33 +96,8 @@ public class DeviceController {
     @GetMapping("/getWardDeviceByGuardId/{guardianId}")
     public BaseResponse<List<DeviceInfo>> getWardDevice(@PathVariable String guardianId, HttpServletRequest request){
         ThrowUtils.throwIf(ObjUtil.isEmpty(guardianId),ErrorCode.PARAMS_ERROR);
-        QueryWrapper<Application> applicationQueryWrapper = new QueryWrapper<>();
-        applicationQueryWrapper.eq("guardian_id", guardianId);
-        List<Application> applications = applicationMapper.selectList(applicationQueryWrapper);
-        List<DeviceInfo> deviceQueryRequestList=new ArrayList<>();
-        for (Application application : applications) {
-            //只有通过的申请才是为绑定成功
-            if(application.getStatus().equals(ApplicationStatus.APPROVED.getCode())){
-                DeviceInfo wardDeviceInfo = new DeviceInfo();
-
-                Device device = deviceMapper.selectById(application.getWard_device_id());
-                wardDeviceInfo.setDeviceId(device.getId());
-                wardDeviceInfo.setDeviceName(device.getName());
-                wardDeviceInfo.setWardId(device.getUser_id());
-                wardDeviceInfo.setDevice_description(device.getDevice_description());
-                wardDeviceInfo.setGuardianId(Long.valueOf(application.getGuardian_id()));
-
-
-                Ward ward = wardMapper.selectById(wardDeviceInfo.getWardId());
-                BeanUtils.copyProperties(ward, wardDeviceInfo);
-
-
-                wardDeviceInfo.setWardName(userMapper.selectById(wardDeviceInfo.getWardId()).getUserName());
-                wardDeviceInfo.setCreated_at(application.getUpdated_at());
-                deviceQueryRequestList.add(wardDeviceInfo);
-            }
-        }
-        return ResultUtils.success(deviceQueryRequestList);
+        //只有通过的申请才是为绑定成功，设备、被监护人信息和姓名由一条联表查询带出
+        return ResultUtils.success(deviceService.listWardDevices(guardianId));
     }
 
     /**
@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/geo-fence")
@@ -47,6 +48,24 @@ public class GeoFenceController {
         return ResultUtils.success(geoFences);
     }
 
+    /**
+     * 查询包含某点的围栏：当前用户自己的围栏和共享区域
+     */
+    @GetMapping("/containing")
+    public BaseResponse<List<GeoFence>> fencesContaining(
+            @RequestParam Double latitude,
+            @RequestParam Double longitude,
+            HttpServletRequest request
+    ) {
+        ThrowUtils.throwIf(latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180,
+                ErrorCode.PARAMS_ERROR, "经纬度超出范围");
+        String userId = String.valueOf(userService.getLoginUser(request).getId());
+        List<GeoFence> geoFences = geoFenceService.fencesContaining(latitude, longitude).stream()
+                .filter(fence -> fence.getDevice_id() == null || userId.equals(fence.getUser_id()))
+                .collect(Collectors.toList());
+        return ResultUtils.success(geoFences);
+    }
+
     @PostMapping("/update")
     public BaseResponse<Boolean> updateGeoFence(
             @Valid @RequestBody GeoFenceUpdateRequest updateRequest,
@@ -1,32 +1,49 @@
 package com.project.mapapp.controller;
 
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.project.mapapp.common.BaseResponse;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.common.ResultUtils;
-import com.project.mapapp.mapper.ApplicationMapper;
-import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.model.dto.device.DeviceInfo;
 import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
-import com.project.mapapp.model.entity.Application;
-import com.project.mapapp.model.entity.Device;
-import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.entity.LocationRollup;
+import com.project.mapapp.model.entity.StayPoint;
+import com.project.mapapp.model.enums.LocationExportFormat;
+import com.project.mapapp.model.vo.CompactTrackVO;
+import com.project.mapapp.model.vo.LatestLocationSnapshotVO;
+import com.project.mapapp.model.vo.LocationHistoryPageVO;
+import com.project.mapapp.model.vo.TrajectoryStatsVO;
+import com.project.mapapp.service.DeviceService;
+import com.project.mapapp.service.LocationExportService;
+import com.project.mapapp.service.LocationRollupService;
+import com.project.mapapp.service.StayPointService;
 import com.project.mapapp.service.LocationDataService;
 import com.project.mapapp.service.UserService;
-import com.project.mapapp.service.WebSocketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.CollectionUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @RestController
@@ -36,12 +53,38 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LocationDataController {
 
+    /**
+     * 批量上报单次允许的最大点数
+     */
+    private static final int MAX_BATCH_SIZE = 2000;
+
+    /**
+     * 历史轨迹分页单页最大条数
+     */
+    private static final int MAX_PAGE_SIZE = 2000;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 批量上报允许设备时钟超前服务器的秒数，范围内的点按服务器当前时间记录，超出则拒绝
+     */
+    @Value("${location.report.max-clock-skew-seconds:60}")
+    private long maxClockSkewSeconds;
+
+    /**
+     * 批量上报允许补传的最长时间（天）
+     */
+    @Value("${location.report.max-age-days:7}")
+    private long maxAgeDays;
+
     private final LocationDataService locationService;
     private final UserService userService;
-    private final WebSocketService webSocketService;
-    private final DeviceMapper deviceMapper;
-    private final ApplicationMapper applicationMapper;
     private final LocationDataService locationDataTestService;
+    private final DeviceService deviceService;
+    private final DeviceGuardianResolver deviceGuardianResolver;
+    private final LocationExportService locationExportService;
+    private final LocationRollupService locationRollupService;
+    private final StayPointService stayPointService;
 
     /**
      * 上报当前位置
@@ -49,15 +92,9 @@ public class LocationDataController {
     @PostMapping("/report")
     public BaseResponse<String> reportLocation(@RequestBody LocationReportDTO dto) {
         log.info("收到位置上报: {}", dto);
-        QueryWrapper<Device> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id",dto.getWardId());
-        String deviceId = deviceMapper.selectOne(queryWrapper).getId();
+        String deviceId = resolveDeviceId(dto.getWardId());
         dto.setDeviceId(deviceId);
-
-        QueryWrapper<Application> applicationQueryWrapper = new QueryWrapper<>();
-        applicationQueryWrapper.eq("ward_device_id",deviceId);
-        Long guardianId = Long.valueOf(applicationMapper.selectOne(applicationQueryWrapper).getGuardian_id());
-        dto.setGuardianId(guardianId);
+        dto.setGuardianId(resolveGuardianId(deviceId));
 
 
         boolean success = locationService.processLocation(
@@ -69,15 +106,63 @@ public class LocationDataController {
         );
 
         if (success) {
-            // 主动触发一次推送测试
-            LocationResponseDTO locationResponseDTO = new LocationResponseDTO();
-            BeanUtils.copyProperties(dto, locationResponseDTO);
-            webSocketService.notifyGuardian(dto.getGuardianId(), locationResponseDTO);
             return ResultUtils.success("上报成功");
         }
         return ResultUtils.error(ErrorCode.OPERATION_ERROR);
     }
 
+    /**
+     * 批量上报位置（设备离线期间缓存的点，重连后一次性补传）
+     */
+    @PostMapping("/report/batch")
+    public BaseResponse<Integer> reportLocationBatch(@RequestBody List<LocationReportDTO> dtos) {
+        ThrowUtils.throwIf(CollectionUtils.isEmpty(dtos), ErrorCode.PARAMS_ERROR, "上报数据不能为空");
+        ThrowUtils.throwIf(dtos.size() > MAX_BATCH_SIZE, ErrorCode.PARAMS_ERROR,
+                "单次最多上报" + MAX_BATCH_SIZE + "个位置");
+        Long wardId = dtos.get(0).getWardId();
+        long now = System.currentTimeMillis();
+        long latest = now + maxClockSkewSeconds * 1000;
+        long earliest = now - maxAgeDays * 24 * 3600 * 1000;
+        for (LocationReportDTO dto : dtos) {
+            ThrowUtils.throwIf(dto == null || !Objects.equals(wardId, dto.getWardId()),
+                    ErrorCode.PARAMS_ERROR, "同一批次只能包含同一被监护人的位置");
+            ThrowUtils.throwIf(dto.getLatitude() == null || dto.getLongitude() == null,
+                    ErrorCode.PARAMS_ERROR, "经纬度不能为空");
+            if (dto.getCreateTime() != null) {
+                long time = dto.getCreateTime().getTime();
+                ThrowUtils.throwIf(time > latest, ErrorCode.PARAMS_ERROR, "定位时间晚于服务器时间，请校准设备时钟");
+                ThrowUtils.throwIf(time < earliest, ErrorCode.PARAMS_ERROR, "定位时间过早，最多补传" + maxAgeDays + "天内的位置");
+                if (time > now) {
+                    dto.setCreateTime(new Date(now));
+                }
+            }
+        }
+        log.info("收到批量位置上报: wardId={}, 数量={}", wardId, dtos.size());
+
+        // 设备和监护人每批只解析一次
+        String deviceId = resolveDeviceId(wardId);
+        Long guardianId = resolveGuardianId(deviceId);
+
+        int saved = locationService.processLocationBatch(deviceId, guardianId, dtos);
+        return ResultUtils.success(saved);
+    }
+
+    private String resolveDeviceId(Long wardId) {
+        ThrowUtils.throwIf(wardId == null, ErrorCode.PARAMS_ERROR, "被监护人ID不能为空");
+        String deviceId = deviceGuardianResolver.resolveDeviceId(wardId);
+        ThrowUtils.throwIf(deviceId == null, ErrorCode.NOT_FOUND_ERROR, "被监护人未绑定设备");
+        return deviceId;
+    }
+
+    /**
+     * 主监护人，位置记录以其名义落库；推送会发给全部监护人
+     */
+    private Long resolveGuardianId(String deviceId) {
+        Long guardianId = deviceGuardianResolver.resolvePrimaryGuardianId(deviceId);
+        ThrowUtils.throwIf(guardianId == null, ErrorCode.NOT_FOUND_ERROR, "设备未关联监护人");
+        return guardianId;
+    }
+
     /**
      * 获取最新位置
      */
@@ -90,44 +175,177 @@ public class LocationDataController {
 
 
 
+    /**
+     * 批量获取当前监护人全部设备的最新位置
+     * 快照未变化时（If-None-Match 或 version 与当前版本一致）返回 304，不带响应体
+     */
+    @GetMapping("/latestLocations")
+    public ResponseEntity<BaseResponse<LatestLocationSnapshotVO>> getLatestLocations(
+            @RequestParam(required = false) String version,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
+        Long guardianId = userService.getLoginUser(request).getId();
+        List<String> deviceIds = deviceService.listWardDevices(String.valueOf(guardianId)).stream()
+                .map(DeviceInfo::getDeviceId)
+                .distinct()
+                .collect(Collectors.toList());
+
+        LatestLocationSnapshotVO snapshot = locationService.getLatestLocations(deviceIds);
+        String eTag = "\"" + snapshot.getVersion() + "\"";
+        if (snapshot.getVersion().equals(version) || (ifNoneMatch != null && ifNoneMatch.contains(eTag))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).body(ResultUtils.success(snapshot));
+    }
+
+    /**
+     * 历史轨迹
+     *
+     * @param tolerance Douglas–Peucker 抽稀容差（米），不传则不做
+     * @param maxPoints 最多返回的点数（按时间分桶抽稀），不传则不限
+     */
     @GetMapping("/history")
     public BaseResponse<List<LocationResponseDTO>> getLocationHistory(
             @RequestParam String deviceId,
             @RequestParam(required = false) String startTime,
             @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer maxPoints,
             HttpServletRequest request) {
+        ThrowUtils.throwIf(tolerance != null && tolerance < 0, ErrorCode.PARAMS_ERROR, "抽稀容差不能为负数");
+        ThrowUtils.throwIf(maxPoints != null && maxPoints < 2, ErrorCode.PARAMS_ERROR, "最多点数不能小于2");
 
         // 3. 转换时间参数
         LocalDateTime start = null;
         LocalDateTime end = null;
         try {
             if (startTime != null) {
-                start = LocalDateTime.parse(startTime, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+                start = LocalDateTime.parse(startTime, TIME_FORMATTER);
             }
             if (endTime != null) {
-                end = LocalDateTime.parse(endTime, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+                end = LocalDateTime.parse(endTime, TIME_FORMATTER);
             }
         } catch (DateTimeParseException e) {
             return ResultUtils.error(ErrorCode.PARAMS_ERROR, "时间格式不正确");
         }
 
-        // 4. 查询数据库
-        List<LocationData> locations = locationDataTestService.queryHistory(deviceId, start, end);
-
-        // 5. 转换为DTO
-        List<LocationResponseDTO> dtos = locations.stream()
-                .sorted(Comparator.comparing(LocationData::getCreate_time)) // 按时间排序
-                .map(loc -> {
-                    LocationResponseDTO dto = new LocationResponseDTO();
-                    dto.setDeviceId(loc.getDevice_id());
-                    dto.setLongitude(loc.getLongitude());
-                    dto.setLatitude(loc.getLatitude());
-                    dto.setAccuracy(loc.getAccuracy());
-                    dto.setCreateTime(loc.getCreate_time().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        // 4. 流式查询并抽稀（SQL 已按时间排序）
+        return ResultUtils.success(locationDataTestService.queryHistoryTrack(deviceId, start, end, tolerance, maxPoints));
+    }
+
+    /**
+     * 紧凑格式的历史轨迹：整条轨迹编码为一个 polyline 字符串加一个差分时间戳数组，参数同 /history
+     */
+    @GetMapping("/history/compact")
+    public BaseResponse<CompactTrackVO> getCompactLocationHistory(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer maxPoints) {
+        ThrowUtils.throwIf(tolerance != null && tolerance < 0, ErrorCode.PARAMS_ERROR, "抽稀容差不能为负数");
+        ThrowUtils.throwIf(maxPoints != null && maxPoints < 2, ErrorCode.PARAMS_ERROR, "最多点数不能小于2");
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+        return ResultUtils.success(locationDataTestService.queryHistoryCompact(deviceId, start, end, tolerance, maxPoints));
+    }
+
+    /**
+     * 设备实时轨迹统计，运动状态变化同时通过 WebSocket 推送 MOTION 事件
+     */
+    @GetMapping("/stats")
+    public BaseResponse<TrajectoryStatsVO> getTrajectoryStats(@RequestParam String deviceId) {
+        return ResultUtils.success(locationDataTestService.getTrajectoryStats(deviceId));
+    }
+
+    /**
+     * 停留点（按到达时间筛选）
+     */
+    @GetMapping("/stay-points")
+    public BaseResponse<List<StayPoint>> getStayPoints(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime) {
+        return ResultUtils.success(stayPointService.listStayPoints(deviceId, parseTime(startTime), parseTime(endTime)));
+    }
+
+    /**
+     * 位置统计汇总（点数、外包框、移动距离、最大速度、围栏内时长）
+     * 离线补传的点只计点数和外包框，不计距离和围栏时长
+     *
+     * @param granularity hour / day，默认 hour
+     */
+    @GetMapping("/rollups")
+    public BaseResponse<List<LocationRollup>> getLocationRollups(
+            @RequestParam String deviceId,
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime) {
+        String normalized = granularity.toUpperCase();
+        ThrowUtils.throwIf(!LocationRollup.HOUR.equals(normalized) && !LocationRollup.DAY.equals(normalized),
+                ErrorCode.PARAMS_ERROR, "粒度只支持 hour / day");
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+        return ResultUtils.success(locationRollupService.listRollups(deviceId, normalized, start, end));
+    }
 
-        return ResultUtils.success(dtos);
+    /**
+     * 历史轨迹分页，按 (create_time, id) 续页，每页开销与翻页深度无关
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页不传
+     */
+    @GetMapping("/history/page")
+    public BaseResponse<LocationHistoryPageVO> getLocationHistoryPage(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "500") int pageSize) {
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > MAX_PAGE_SIZE, ErrorCode.PARAMS_ERROR,
+                "每页条数需在 1-" + MAX_PAGE_SIZE + " 之间");
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+        return ResultUtils.success(locationDataTestService.queryHistoryPage(deviceId, start, end, cursor, pageSize));
+    }
+
+    /**
+     * 导出历史轨迹，逐行流式写入响应；只有管理员和申请已通过的监护人可以导出
+     *
+     * @param format json / csv / xlsx，默认 csv
+     */
+    @GetMapping("/history/export")
+    public void exportLocationHistory(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        LocationExportFormat exportFormat = LocationExportFormat.getEnumByValue(format);
+        ThrowUtils.throwIf(exportFormat == null, ErrorCode.PARAMS_ERROR, "不支持的导出格式");
+        Long loginUserId = userService.getLoginUser(request).getId();
+        ThrowUtils.throwIf(!userService.isAdmin(request)
+                && !deviceGuardianResolver.resolveApprovedGuardianIds(deviceId).contains(loginUserId), ErrorCode.NO_AUTH_ERROR);
+
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+
+        String fileName = URLEncoder.encode("轨迹_" + deviceId, StandardCharsets.UTF_8.name()).replace("+", "%20")
+                + "." + exportFormat.getExtension();
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename*=UTF-8''" + fileName);
+        locationExportService.exportHistory(deviceId, start, end, exportFormat, response.getOutputStream());
+        response.flushBuffer();
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value, TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "时间格式不正确");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.project.mapapp.controller;
+
+import com.project.mapapp.annotation.AuthCheck;
+import com.project.mapapp.common.BaseResponse;
+import com.project.mapapp.common.ResultUtils;
+import com.project.mapapp.constant.UserConstant;
+import com.project.mapapp.manager.ClusterPushRelay;
+import com.project.mapapp.manager.LocationKalmanFilter;
+import com.project.mapapp.manager.LocationOutlierFilter;
+import com.project.mapapp.manager.LocationPartitionManager;
+import com.project.mapapp.manager.LocationPushCoalescer;
+import com.project.mapapp.manager.LocationRollupJob;
+import com.project.mapapp.manager.LocationWriteBehindQueue;
+import com.project.mapapp.manager.WebSocketSessionManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行指标
+ */
+@RestController
+@RequestMapping("/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final LocationWriteBehindQueue locationWriteBehindQueue;
+    private final WebSocketSessionManager webSocketSessionManager;
+    private final LocationPushCoalescer locationPushCoalescer;
+    private final ClusterPushRelay clusterPushRelay;
+    private final LocationPartitionManager locationPartitionManager;
+    private final LocationRollupJob locationRollupJob;
+    private final LocationOutlierFilter locationOutlierFilter;
+    private final LocationKalmanFilter locationKalmanFilter;
+
+    /**
+     * 位置异步写入管道状态（队列深度、入队/拒绝/落库计数）
+     */
+    @GetMapping("/location-pipeline")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getLocationPipelineStats() {
+        return ResultUtils.success(locationWriteBehindQueue.getStats());
+    }
+
+    /**
+     * location_data 分区维护状态（最近一次执行时间、新建/删除分区数）
+     */
+    @GetMapping("/location-partitions")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getLocationPartitionStats() {
+        return ResultUtils.success(locationPartitionManager.getStats());
+    }
+
+    /**
+     * 位置汇总任务状态（最近一次执行时间、累计处理行数）
+     */
+    @GetMapping("/location-rollup")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getLocationRollupStats() {
+        return ResultUtils.success(locationRollupJob.getStats());
+    }
+
+    /**
+     * 离群点过滤状态（接受数、低精度/跳点丢弃数、窗口重置数）
+     */
+    @GetMapping("/location-outliers")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getLocationOutlierStats() {
+        return ResultUtils.success(locationOutlierFilter.getStats());
+    }
+
+    /**
+     * 卡尔曼平滑状态（内存中的设备数、更新/重置/恢复次数）
+     */
+    @GetMapping("/location-kalman")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getLocationKalmanStats() {
+        return ResultUtils.success(locationKalmanFilter.getStats());
+    }
+
+    /**
+     * 位置推送合并状态（提交数、实际推送数、被合并掉的位置数）
+     */
+    @GetMapping("/location-push")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getLocationPushStats() {
+        return ResultUtils.success(locationPushCoalescer.getStats());
+    }
+
+    /**
+     * 集群推送中继状态（发布/接收/投递计数）
+     */
+    @GetMapping("/websocket-cluster")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Map<String, Object>> getWebSocketClusterStats() {
+        return ResultUtils.success(clusterPushRelay.getStats());
+    }
+
+    /**
+     * WebSocket 会话出站队列状态（每个会话的积压深度、发送/丢弃计数）
+     */
+    @GetMapping("/websocket-sessions")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<List<Map<String, Object>>> getWebSocketSessionStats() {
+        return ResultUtils.success(webSocketSessionManager.getOutboundStats());
+    }
+}
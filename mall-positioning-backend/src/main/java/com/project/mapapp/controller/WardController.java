@@ -6,6 +6,7 @@ import com.project.mapapp.common.BaseResponse;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.common.ResultUtils;
 import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.GuardianWardCache;
 import com.project.mapapp.mapper.WardMapper;
 import com.project.mapapp.model.dto.ward.WardInfo;
 import com.project.mapapp.model.entity.Ward;
@@ -21,9 +22,11 @@ import javax.validation.constraints.Min;
 public class WardController {
 
     private final WardMapper wardMapper;
+    private final GuardianWardCache guardianWardCache;
 
-    public WardController(WardMapper wardMapper) {
+    public WardController(WardMapper wardMapper, GuardianWardCache guardianWardCache) {
         this.wardMapper = wardMapper;
+        this.guardianWardCache = guardianWardCache;
     }
 
     @GetMapping("/getWardInfo")
@@ -45,6 +48,7 @@ public class WardController {
         wardQueryWrapper.eq("id", wardId);
         wardQueryWrapper.eq("userId", guardianId);
         wardMapper.update(ward, wardQueryWrapper);
+        guardianWardCache.invalidate(guardianId);
         return ResultUtils.success("更新成功");
     }
 }
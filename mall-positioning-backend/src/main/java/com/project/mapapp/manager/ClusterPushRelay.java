@@ -0,0 +1,260 @@
+package com.project.mapapp.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.dto.websocket.ClusterPushMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 集群推送中继（Redis pub/sub）
+ * <p>
+ * WebSocket 会话只存在于建立连接的节点上。开启后，每个节点把按监护人寻址的推送发布到同一个频道，
+ * 各节点收到后只投递给自己持有的会话；发布节点自己的会话已在本地直接投递，收到自己的消息时忽略。
+ * 位置先进入有界缓冲，按 flushIntervalMs / batchSize 合批发布，缓冲满时丢弃新位置；警报和可丢弃事件立即单独发布。
+ */
+@Slf4j
+@Component
+public class ClusterPushRelay implements MessageListener {
+
+    @Value("${websocket.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${websocket.cluster.channel:gps:push}")
+    private String channel;
+
+    @Value("${websocket.cluster.batch-size:200}")
+    private int batchSize;
+
+    @Value("${websocket.cluster.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${websocket.cluster.buffer-capacity:10000}")
+    private int bufferCapacity;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate stringRedisTemplate;
+    private final WebSocketSessionManager sessionManager;
+    private final ObjectMapper objectMapper;
+
+    private BlockingQueue<ClusterPushMessage.Item> pendingLocations;
+    private ScheduledExecutorService flusher;
+    private ExecutorService receiver;
+    private RedisMessageListenerContainer container;
+
+    private final AtomicLong publishedMessages = new AtomicLong();
+    private final AtomicLong publishedLocations = new AtomicLong();
+    private final AtomicLong publishedAlerts = new AtomicLong();
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong droppedLocations = new AtomicLong();
+    private final AtomicLong publishFailures = new AtomicLong();
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong receivedLocations = new AtomicLong();
+    private final AtomicLong receivedAlerts = new AtomicLong();
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final AtomicLong deliveredFrames = new AtomicLong();
+    private final AtomicLong receiveFailures = new AtomicLong();
+
+    public ClusterPushRelay(StringRedisTemplate stringRedisTemplate, WebSocketSessionManager sessionManager,
+                            ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.sessionManager = sessionManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        pendingLocations = new ArrayBlockingQueue<>(bufferCapacity);
+        flusher = Executors.newSingleThreadScheduledExecutor(namedDaemon("cluster-push-flusher"));
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        // 单线程顺序处理收到的消息，避免默认执行器每条消息新建线程
+        receiver = Executors.newSingleThreadExecutor(namedDaemon("cluster-push-receiver"));
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(stringRedisTemplate.getRequiredConnectionFactory());
+        container.setTaskExecutor(receiver);
+        container.addMessageListener(this, new ChannelTopic(channel));
+        container.afterPropertiesSet();
+        container.start();
+        log.info("集群推送已启用 - 节点: {}, 频道: {}", nodeId, channel);
+    }
+
+    /**
+     * 发布位置推送，进入缓冲等待合批
+     */
+    public void publishLocation(Collection<Long> guardianIds, String payload) {
+        if (!enabled) {
+            return;
+        }
+        if (!pendingLocations.offer(new ClusterPushMessage.Item(new ArrayList<>(guardianIds), payload))) {
+            droppedLocations.incrementAndGet();
+        }
+    }
+
+    /**
+     * 发布警报推送，立即发送
+     */
+    public void publishAlert(Collection<Long> guardianIds, String payload) {
+        if (!enabled) {
+            return;
+        }
+        List<ClusterPushMessage.Item> alerts = Collections.singletonList(
+                new ClusterPushMessage.Item(new ArrayList<>(guardianIds), payload));
+        if (publish(new ClusterPushMessage(nodeId, null, alerts, null))) {
+            publishedAlerts.incrementAndGet();
+        }
+    }
+
+    /**
+     * 发布可丢弃事件，立即发送；接收节点按可丢弃帧投递
+     */
+    public void publishEvent(Collection<Long> guardianIds, String payload) {
+        if (!enabled) {
+            return;
+        }
+        List<ClusterPushMessage.Item> events = Collections.singletonList(
+                new ClusterPushMessage.Item(new ArrayList<>(guardianIds), payload));
+        if (publish(new ClusterPushMessage(nodeId, null, null, events))) {
+            publishedEvents.incrementAndGet();
+        }
+    }
+
+    private void flush() {
+        try {
+            List<ClusterPushMessage.Item> batch = new ArrayList<>(batchSize);
+            while (pendingLocations.drainTo(batch, batchSize) > 0) {
+                if (publish(new ClusterPushMessage(nodeId, batch, null, null))) {
+                    publishedLocations.addAndGet(batch.size());
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        } catch (Exception e) {
+            log.error("集群推送合批发布异常", e);
+        }
+    }
+
+    private boolean publish(ClusterPushMessage message) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(message));
+            publishedMessages.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            publishFailures.incrementAndGet();
+            log.warn("集群推送发布失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        ClusterPushMessage pushMessage;
+        try {
+            pushMessage = objectMapper.readValue(message.getBody(), ClusterPushMessage.class);
+        } catch (Exception e) {
+            receiveFailures.incrementAndGet();
+            log.warn("集群推送消息解析失败: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(pushMessage.getNode())) {
+            return;
+        }
+        receivedMessages.incrementAndGet();
+
+        if (pushMessage.getAlerts() != null) {
+            for (ClusterPushMessage.Item item : pushMessage.getAlerts()) {
+                receivedAlerts.incrementAndGet();
+                TextMessage frame = new TextMessage(item.getPayload());
+                for (Long guardianId : item.getGuardianIds()) {
+                    deliveredFrames.addAndGet(sessionManager.deliver(guardianId, frame, null));
+                }
+            }
+        }
+        if (pushMessage.getEvents() != null) {
+            for (ClusterPushMessage.Item item : pushMessage.getEvents()) {
+                receivedEvents.incrementAndGet();
+                TextMessage frame = new TextMessage(item.getPayload());
+                for (Long guardianId : item.getGuardianIds()) {
+                    deliveredFrames.addAndGet(sessionManager.deliverDroppable(guardianId, frame));
+                }
+            }
+        }
+        if (pushMessage.getLocations() != null) {
+            for (ClusterPushMessage.Item item : pushMessage.getLocations()) {
+                receivedLocations.incrementAndGet();
+                try {
+                    TextMessage frame = new TextMessage(item.getPayload());
+                    LocationResponseDTO location = objectMapper.readValue(item.getPayload(), LocationResponseDTO.class);
+                    for (Long guardianId : item.getGuardianIds()) {
+                        deliveredFrames.addAndGet(sessionManager.deliver(guardianId, frame, location));
+                    }
+                } catch (Exception e) {
+                    receiveFailures.incrementAndGet();
+                    log.warn("集群位置推送投递失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        stats.put("nodeId", nodeId);
+        stats.put("channel", channel);
+        stats.put("pendingLocations", pendingLocations.size());
+        stats.put("publishedMessages", publishedMessages.get());
+        stats.put("publishedLocations", publishedLocations.get());
+        stats.put("publishedAlerts", publishedAlerts.get());
+        stats.put("publishedEvents", publishedEvents.get());
+        stats.put("droppedLocations", droppedLocations.get());
+        stats.put("publishFailures", publishFailures.get());
+        stats.put("receivedMessages", receivedMessages.get());
+        stats.put("receivedLocations", receivedLocations.get());
+        stats.put("receivedAlerts", receivedAlerts.get());
+        stats.put("receivedEvents", receivedEvents.get());
+        stats.put("deliveredFrames", deliveredFrames.get());
+        stats.put("receiveFailures", receiveFailures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+        flusher.shutdown();
+        flush();
+        try {
+            container.destroy();
+        } catch (Exception e) {
+            log.debug("关闭集群推送订阅时出错", e);
+        }
+        receiver.shutdownNow();
+    }
+
+    private static ThreadFactory namedDaemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
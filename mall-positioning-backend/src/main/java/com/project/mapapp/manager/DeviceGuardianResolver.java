@@ -0,0 +1,228 @@
+package com.project.mapapp.manager;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.project.mapapp.mapper.ApplicationMapper;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.model.entity.Application;
+import com.project.mapapp.model.entity.Device;
+import com.project.mapapp.model.enums.ApplicationStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 被监护人 → 设备 → 监护人 解析缓存
+ * <p>
+ * 位置上报每次都要由 wardId 找到设备、再由设备找到已通过申请的监护人，这两个映射只在绑定、审批时变化。
+ * 一级为本地 Map（localTtlMs 内有效，限制多节点间的不一致窗口），二级为 Redis 字符串，两级都未命中才查库。
+ * 绑定设备、申请通过/拒绝时显式失效。一个被监护人可以有多个监护人，列表第一个为主监护人（最早通过的申请）。
+ * 权限校验和推送只认已通过的监护人（{@link #resolveApprovedGuardianIds}）；设备还没有通过的申请时，
+ * 上报仍沿用原有行为以最早一条申请（不论状态）的监护人名义落库（{@link #resolvePrimaryGuardianId}），但不推送给任何人。
+ */
+@Slf4j
+@Component
+public class DeviceGuardianResolver {
+
+    private static final String WARD_DEVICE_KEY_PREFIX = "device:ward:";
+    private static final String DEVICE_GUARDIANS_KEY_PREFIX = "device:guardian-set:";
+
+    @Value("${device.resolver.local-ttl-ms:60000}")
+    private long localTtlMs;
+
+    @Value("${device.resolver.redis-expire-hours:24}")
+    private long redisExpireHours;
+
+    private final DeviceMapper deviceMapper;
+    private final ApplicationMapper applicationMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ConcurrentMap<Long, Cached<String>> wardDevices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cached<Guardians>> deviceGuardians = new ConcurrentHashMap<>();
+
+    public DeviceGuardianResolver(DeviceMapper deviceMapper, ApplicationMapper applicationMapper,
+                                  StringRedisTemplate stringRedisTemplate) {
+        this.deviceMapper = deviceMapper;
+        this.applicationMapper = applicationMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 被监护人绑定的设备ID，未绑定返回 null
+     */
+    public String resolveDeviceId(Long wardId) {
+        if (wardId == null) {
+            return null;
+        }
+        return resolve(wardDevices, wardId, WARD_DEVICE_KEY_PREFIX + wardId,
+                Function.identity(), Function.identity(), () -> {
+                    QueryWrapper<Device> queryWrapper = new QueryWrapper<>();
+                    queryWrapper.select("id").eq("user_id", wardId).last("LIMIT 1");
+                    Device device = deviceMapper.selectOne(queryWrapper);
+                    return device != null ? device.getId() : null;
+                });
+    }
+
+    /**
+     * 设备已通过申请的全部监护人，第一个为主监护人；没有时返回空列表。
+     * 读取位置、导出轨迹等权限校验以及位置、报警推送都只能用这个列表
+     */
+    public List<Long> resolveApprovedGuardianIds(String deviceId) {
+        Guardians guardians = resolveGuardians(deviceId);
+        return guardians != null ? guardians.approved : Collections.emptyList();
+    }
+
+    /**
+     * 上报落库使用的监护人：最早通过的申请，没有时为最早一条申请（不论状态）；都没有时返回 null。
+     * 只用于 location_data.guardian_id，不能用于权限校验
+     */
+    public Long resolvePrimaryGuardianId(String deviceId) {
+        Guardians guardians = resolveGuardians(deviceId);
+        if (guardians == null) {
+            return null;
+        }
+        return guardians.approved.isEmpty() ? guardians.fallback : guardians.approved.get(0);
+    }
+
+    private Guardians resolveGuardians(String deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        return resolve(deviceGuardians, deviceId, DEVICE_GUARDIANS_KEY_PREFIX + deviceId,
+                Guardians::parse, Guardians::format, () -> {
+                    QueryWrapper<Application> queryWrapper = new QueryWrapper<>();
+                    queryWrapper.select("guardian_id", "status")
+                            .eq("ward_device_id", deviceId)
+                            .orderByAsc("id");
+                    List<Application> applications = applicationMapper.selectList(queryWrapper).stream()
+                            .filter(a -> StrUtil.isNotBlank(a.getGuardian_id()))
+                            .collect(Collectors.toList());
+                    if (applications.isEmpty()) {
+                        return null;
+                    }
+                    List<Long> approved = applications.stream()
+                            .filter(a -> ApplicationStatus.APPROVED.getCode().equals(a.getStatus()))
+                            .map(a -> Long.valueOf(a.getGuardian_id()))
+                            .distinct()
+                            .collect(Collectors.toList());
+                    return new Guardians(Collections.unmodifiableList(approved),
+                            Long.valueOf(applications.get(0).getGuardian_id()));
+                });
+    }
+
+    /**
+     * 被监护人绑定设备后调用
+     */
+    public void invalidateWard(Long wardId) {
+        if (wardId != null) {
+            wardDevices.remove(wardId);
+            deleteQuietly(WARD_DEVICE_KEY_PREFIX + wardId);
+        }
+    }
+
+    /**
+     * 设备的申请通过或被拒绝后调用
+     */
+    public void invalidateDevice(String deviceId) {
+        if (deviceId != null) {
+            deviceGuardians.remove(deviceId);
+            deleteQuietly(DEVICE_GUARDIANS_KEY_PREFIX + deviceId);
+        }
+    }
+
+    private <K, V> V resolve(ConcurrentMap<K, Cached<V>> local, K key, String redisKey,
+                             Function<String, V> decode, Function<V, String> encode, Supplier<V> loader) {
+        long now = System.currentTimeMillis();
+        Cached<V> cached = local.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.value;
+        }
+
+        V value = null;
+        try {
+            String raw = stringRedisTemplate.opsForValue().get(redisKey);
+            if (StrUtil.isNotBlank(raw)) {
+                value = decode.apply(raw);
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis设备映射失败 - key: {}, {}", redisKey, e.getMessage());
+        }
+
+        if (value == null) {
+            value = loader.get();
+            if (value == null) {
+                // 未绑定/未通过的结果不缓存，绑定后立即可用
+                local.remove(key);
+                return null;
+            }
+            try {
+                stringRedisTemplate.opsForValue().set(redisKey, encode.apply(value), redisExpireHours, TimeUnit.HOURS);
+            } catch (Exception e) {
+                log.warn("写入Redis设备映射失败 - key: {}, {}", redisKey, e.getMessage());
+            }
+        }
+        local.put(key, new Cached<>(value, now + localTtlMs));
+        return value;
+    }
+
+    private void deleteQuietly(String redisKey) {
+        try {
+            stringRedisTemplate.delete(redisKey);
+        } catch (Exception e) {
+            log.warn("删除Redis设备映射失败 - key: {}, {}", redisKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 设备的监护人：已通过的（按申请顺序）和最早一条申请的监护人。
+     * Redis 中存为 "已通过ID,...;最早申请的监护人ID"
+     */
+    private static final class Guardians {
+        private final List<Long> approved;
+        private final Long fallback;
+
+        private Guardians(List<Long> approved, Long fallback) {
+            this.approved = approved;
+            this.fallback = fallback;
+        }
+
+        private static Guardians parse(String raw) {
+            int separator = raw.indexOf(';');
+            if (separator < 0) {
+                return null;
+            }
+            List<Long> approved = new ArrayList<>();
+            for (String id : StrUtil.split(raw.substring(0, separator), ',')) {
+                if (StrUtil.isNotBlank(id)) {
+                    approved.add(Long.valueOf(id.trim()));
+                }
+            }
+            String fallback = raw.substring(separator + 1).trim();
+            return new Guardians(Collections.unmodifiableList(approved),
+                    fallback.isEmpty() ? null : Long.valueOf(fallback));
+        }
+
+        private String format() {
+            return StrUtil.join(",", approved) + ";" + (fallback != null ? fallback : "");
+        }
+    }
+
+    private static final class Cached<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Cached(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
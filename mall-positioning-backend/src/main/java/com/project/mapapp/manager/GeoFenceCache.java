@@ -0,0 +1,147 @@
+package com.project.mapapp.manager;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.mapper.GeoFenceMapper;
+import com.project.mapapp.model.entity.GeoFence;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备围栏缓存
+ * <p>
+ * 按设备缓存已解析好的 JTS PreparedGeometry，围栏校验时不再查库、不再解析 JSON。
+ * 围栏增删改时按设备失效；LRU 容量和过期时间兜底绕过服务层的直接改库。
+ */
+@Slf4j
+@Component
+public class GeoFenceCache {
+
+    @Value("${geofence.cache.max-devices:10000}")
+    private int maxDevices;
+
+    @Value("${geofence.cache.expire-minutes:30}")
+    private long expireMinutes;
+
+    private final GeoFenceMapper geoFenceMapper;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final PreparedGeometryFactory preparedGeometryFactory = new PreparedGeometryFactory();
+    private LRUCache<String, List<PreparedFence>> cache;
+
+    public GeoFenceCache(GeoFenceMapper geoFenceMapper) {
+        this.geoFenceMapper = geoFenceMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = CacheUtil.newLRUCache(maxDevices, TimeUnit.MINUTES.toMillis(expireMinutes));
+    }
+
+    /**
+     * 获取设备的全部围栏，未命中时从数据库加载
+     */
+    public List<PreparedFence> getFences(String deviceId) {
+        if (deviceId == null) {
+            return Collections.emptyList();
+        }
+        return cache.get(deviceId, () -> load(deviceId));
+    }
+
+    /**
+     * 设备围栏发生变化时调用
+     */
+    public void invalidate(String deviceId) {
+        if (deviceId != null) {
+            cache.remove(deviceId);
+        }
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 解析并预处理单个围栏，坐标非法时返回 null
+     */
+    public PreparedFence prepare(GeoFence fence) {
+        try {
+            Polygon polygon = parseCoordinates((String) fence.getCoordinates());
+            return new PreparedFence(fence, polygon, preparedGeometryFactory.create(polygon));
+        } catch (Exception e) {
+            log.warn("围栏坐标无法解析，已跳过 - fenceId: {}", fence.getId());
+            return null;
+        }
+    }
+
+    public Polygon parseCoordinates(String coordinatesJson) {
+        try {
+            List<List<Double>> coordinates = JSON.parseObject(
+                    coordinatesJson,
+                    new TypeReference<List<List<Double>>>() {}
+            );
+
+            Coordinate[] coords = coordinates.stream()
+                    .map(p -> new Coordinate(p.get(0), p.get(1)))
+                    .toArray(Coordinate[]::new);
+
+            // 闭合多边形
+            if (coords.length > 0 && !coords[0].equals(coords[coords.length-1])) {
+                coords = Arrays.copyOf(coords, coords.length + 1);
+                coords[coords.length - 1] = coords[0];
+            }
+
+            return geometryFactory.createPolygon(coords);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "围栏坐标格式错误");
+        }
+    }
+
+    private List<PreparedFence> load(String deviceId) {
+        List<GeoFence> fences = geoFenceMapper.selectByDeviceId(deviceId);
+        if (fences == null || fences.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<PreparedFence> prepared = new ArrayList<>(fences.size());
+        for (GeoFence fence : fences) {
+            PreparedFence preparedFence = prepare(fence);
+            if (preparedFence != null) {
+                prepared.add(preparedFence);
+            }
+        }
+        return Collections.unmodifiableList(prepared);
+    }
+
+    /**
+     * 预处理后的围栏
+     */
+    @Getter
+    public static class PreparedFence {
+        private final GeoFence fence;
+        private final Polygon polygon;
+        private final PreparedGeometry prepared;
+
+        public PreparedFence(GeoFence fence, Polygon polygon, PreparedGeometry prepared) {
+            this.fence = fence;
+            this.polygon = polygon;
+            this.prepared = prepared;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.mapper.GeoFenceMapper;
+import com.project.mapapp.model.entity.GeoFence;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 全局围栏空间索引
+ * <p>
+ * 所有围栏（设备围栏和 device_id 为空的共享区域，如商场楼层、出口）按外包矩形放入 JTS STRtree，
+ * 查询时先用矩形过滤，再用 PreparedGeometry 精确判断。STRtree 建好后不可修改，
+ * 因此围栏变更先记入增量表并把树中的旧条目标记为失效，增量累积到阈值后在后台整体重建。
+ * 查询只读取 volatile 快照，不加锁。
+ * 越界校验中设备自己的围栏逐个判断（需要对从未进入过的围栏产生 EXIT），共享围栏只判断点附近的候选（{@link #sharedFencesNear}）。
+ */
+@Slf4j
+@Component
+public class GeoFenceSpatialIndex {
+
+    @Value("${geofence.index.rebuild-threshold:64}")
+    private int rebuildThreshold;
+
+    private final GeoFenceMapper geoFenceMapper;
+    private final GeoFenceCache geoFenceCache;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    /**
+     * 当前全部围栏，索引重建的数据来源
+     */
+    private final ConcurrentMap<Long, GeoFenceCache.PreparedFence> fences = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "geofence-index-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Snapshot snapshot = Snapshot.empty();
+
+    public GeoFenceSpatialIndex(GeoFenceMapper geoFenceMapper, GeoFenceCache geoFenceCache) {
+        this.geoFenceMapper = geoFenceMapper;
+        this.geoFenceCache = geoFenceCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            List<GeoFence> all = geoFenceMapper.selectList(null);
+            for (GeoFence fence : all) {
+                GeoFenceCache.PreparedFence prepared = geoFenceCache.prepare(fence);
+                if (prepared != null) {
+                    fences.put(fence.getId(), prepared);
+                }
+            }
+            rebuild();
+            log.info("围栏空间索引加载完成 - 围栏数: {}", fences.size());
+        } catch (Exception e) {
+            log.error("围栏空间索引加载失败", e);
+        }
+    }
+
+    /**
+     * 查找包含该点的全部围栏（设备围栏和共享围栏）
+     */
+    public List<GeoFence> fencesContaining(double latitude, double longitude) {
+        Snapshot current = snapshot;
+        Point point = geometryFactory.createPoint(new Coordinate(longitude, latitude));
+        List<GeoFence> result = new ArrayList<>();
+
+        for (Object item : current.tree.query(new Envelope(longitude, longitude, latitude, latitude))) {
+            GeoFenceCache.PreparedFence fence = (GeoFenceCache.PreparedFence) item;
+            if (!current.stale.contains(fence.getFence().getId()) && fence.getPrepared().contains(point)) {
+                result.add(fence.getFence());
+            }
+        }
+        for (GeoFenceCache.PreparedFence fence : current.delta.values()) {
+            if (fence.getPolygon().getEnvelopeInternal().contains(longitude, latitude)
+                    && fence.getPrepared().contains(point)) {
+                result.add(fence.getFence());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 外包矩形扩展 marginDegrees 后包含该点的共享围栏（device_id 为空），作为越界校验的候选，未做精确判断
+     */
+    public List<GeoFenceCache.PreparedFence> sharedFencesNear(double latitude, double longitude, double marginDegrees) {
+        Snapshot current = snapshot;
+        Envelope search = new Envelope(longitude - marginDegrees, longitude + marginDegrees,
+                latitude - marginDegrees, latitude + marginDegrees);
+        List<GeoFenceCache.PreparedFence> result = new ArrayList<>();
+        for (Object item : current.tree.query(search)) {
+            GeoFenceCache.PreparedFence fence = (GeoFenceCache.PreparedFence) item;
+            if (fence.getFence().getDevice_id() == null && !current.stale.contains(fence.getFence().getId())) {
+                result.add(fence);
+            }
+        }
+        for (GeoFenceCache.PreparedFence fence : current.delta.values()) {
+            if (fence.getFence().getDevice_id() == null
+                    && fence.getPolygon().getEnvelopeInternal().intersects(search)) {
+                result.add(fence);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按ID取当前的围栏，已删除时返回 null
+     */
+    public GeoFenceCache.PreparedFence get(Long fenceId) {
+        return fences.get(fenceId);
+    }
+
+    /**
+     * 新增或修改围栏
+     */
+    public void upsert(GeoFence fence) {
+        if (fence == null || fence.getId() == null) {
+            return;
+        }
+        GeoFenceCache.PreparedFence prepared = geoFenceCache.prepare(fence);
+        synchronized (writeLock) {
+            if (prepared == null) {
+                fences.remove(fence.getId());
+            } else {
+                fences.put(fence.getId(), prepared);
+            }
+            Snapshot current = snapshot;
+            Map<Long, GeoFenceCache.PreparedFence> delta = new HashMap<>(current.delta);
+            if (prepared == null) {
+                delta.remove(fence.getId());
+            } else {
+                delta.put(fence.getId(), prepared);
+            }
+            Set<Long> stale = new HashSet<>(current.stale);
+            stale.add(fence.getId());
+            snapshot = new Snapshot(current.tree, delta, stale);
+        }
+        scheduleRebuildIfNeeded();
+    }
+
+    /**
+     * 删除围栏
+     */
+    public void remove(Long fenceId) {
+        if (fenceId == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            fences.remove(fenceId);
+            Snapshot current = snapshot;
+            Map<Long, GeoFenceCache.PreparedFence> delta = new HashMap<>(current.delta);
+            delta.remove(fenceId);
+            Set<Long> stale = new HashSet<>(current.stale);
+            stale.add(fenceId);
+            snapshot = new Snapshot(current.tree, delta, stale);
+        }
+        scheduleRebuildIfNeeded();
+    }
+
+    public int size() {
+        return fences.size();
+    }
+
+    private void scheduleRebuildIfNeeded() {
+        Snapshot current = snapshot;
+        if (current.delta.size() + current.stale.size() < rebuildThreshold) {
+            return;
+        }
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    log.error("围栏空间索引重建失败", e);
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private void rebuild() {
+        synchronized (writeLock) {
+            STRtree tree = new STRtree();
+            for (GeoFenceCache.PreparedFence fence : fences.values()) {
+                tree.insert(fence.getPolygon().getEnvelopeInternal(), fence);
+            }
+            tree.build();
+            snapshot = new Snapshot(tree, Collections.emptyMap(), Collections.emptySet());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 不可变索引快照：已建好的树 + 之后的增量 + 树中已失效的围栏ID
+     */
+    private static class Snapshot {
+        private final STRtree tree;
+        private final Map<Long, GeoFenceCache.PreparedFence> delta;
+        private final Set<Long> stale;
+
+        private Snapshot(STRtree tree, Map<Long, GeoFenceCache.PreparedFence> delta, Set<Long> stale) {
+            this.tree = tree;
+            this.delta = delta;
+            this.stale = stale;
+        }
+
+        private static Snapshot empty() {
+            STRtree tree = new STRtree();
+            tree.build();
+            return new Snapshot(tree, Collections.emptyMap(), Collections.emptySet());
+        }
+    }
+}
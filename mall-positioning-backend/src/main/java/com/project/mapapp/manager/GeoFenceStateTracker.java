@@ -0,0 +1,135 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.enums.FenceTransition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 设备-围栏 进出状态机
+ * <p>
+ * 每个 (设备, 围栏) 维护 UNKNOWN / INSIDE / OUTSIDE 三种状态，只有连续 confirmPoints 个
+ * 明确落在另一侧的点才切换状态并产生 ENTER / EXIT 事件；离边界小于定位精度（且不小于
+ * minMarginMeters）的点视为不确定，不参与计数，从而抑制围栏边缘的 GPS 抖动。
+ * 设备自己的围栏 UNKNOWN 确认为 OUTSIDE 时同样产生 EXIT；共享围栏不产生（设备从未进入过）。
+ * 确认为 INSIDE 时只建立基线不产生事件。
+ */
+@Component
+public class GeoFenceStateTracker {
+
+    @Value("${geofence.hysteresis.confirm-points:2}")
+    private int confirmPoints;
+
+    @Value("${geofence.hysteresis.min-margin-meters:10}")
+    private double minMarginMeters;
+
+    private final ConcurrentMap<String, ConcurrentMap<Long, FenceState>> states = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次观测
+     *
+     * @param inside          点是否在围栏内
+     * @param nearBoundary    点是否落在边界不确定带内，只在可能切换状态时才计算
+     * @param exitFromUnknown UNKNOWN 确认为 OUTSIDE 时是否产生 EXIT
+     * @return 状态切换事件，无切换返回 null
+     */
+    public FenceTransition observe(String deviceId, Long fenceId, boolean inside, BooleanSupplier nearBoundary,
+                                   boolean exitFromUnknown) {
+        FenceState state = states.computeIfAbsent(deviceId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fenceId, k -> new FenceState());
+        Zone observed = inside ? Zone.INSIDE : Zone.OUTSIDE;
+
+        synchronized (state) {
+            if (observed == state.zone) {
+                state.pending = null;
+                state.pendingCount = 0;
+                return null;
+            }
+            if (nearBoundary.getAsBoolean()) {
+                return null;
+            }
+            if (observed == state.pending) {
+                state.pendingCount++;
+            } else {
+                state.pending = observed;
+                state.pendingCount = 1;
+            }
+            if (state.pendingCount < confirmPoints) {
+                return null;
+            }
+
+            Zone previous = state.zone;
+            state.zone = observed;
+            state.pending = null;
+            state.pendingCount = 0;
+            if (observed == Zone.OUTSIDE) {
+                return previous != Zone.UNKNOWN || exitFromUnknown ? FenceTransition.EXIT : null;
+            }
+            return previous == Zone.UNKNOWN ? null : FenceTransition.ENTER;
+        }
+    }
+
+    /**
+     * 边界不确定带宽度（米）：取定位精度与最小宽度中的较大值
+     */
+    public double marginMeters(double accuracyMeters) {
+        return Math.max(minMarginMeters, accuracyMeters);
+    }
+
+    public boolean hasDevice(String deviceId) {
+        return states.containsKey(deviceId);
+    }
+
+    /**
+     * 设备在其中或正在确认进出的围栏ID；点远离这些围栏时仍要继续观测，才能产生 EXIT
+     */
+    public List<Long> engagedFences(String deviceId) {
+        ConcurrentMap<Long, FenceState> deviceStates = states.get(deviceId);
+        if (deviceStates == null) {
+            return Collections.emptyList();
+        }
+        List<Long> fenceIds = new ArrayList<>();
+        for (Map.Entry<Long, FenceState> entry : deviceStates.entrySet()) {
+            FenceState state = entry.getValue();
+            synchronized (state) {
+                if (state.zone == Zone.INSIDE || state.pending != null) {
+                    fenceIds.add(entry.getKey());
+                }
+            }
+        }
+        return fenceIds;
+    }
+
+    /**
+     * 围栏几何变化或被删除后丢弃其状态，由后续的点重新确认；deviceId 为空（共享围栏）时丢弃所有设备上的状态
+     */
+    public void resetFence(String deviceId, Long fenceId) {
+        if (deviceId == null) {
+            for (ConcurrentMap<Long, FenceState> deviceStates : states.values()) {
+                deviceStates.remove(fenceId);
+            }
+            return;
+        }
+        ConcurrentMap<Long, FenceState> deviceStates = states.get(deviceId);
+        if (deviceStates != null) {
+            deviceStates.remove(fenceId);
+        }
+    }
+
+    private enum Zone {
+        UNKNOWN, INSIDE, OUTSIDE
+    }
+
+    private static class FenceState {
+        private Zone zone = Zone.UNKNOWN;
+        private Zone pending;
+        private int pendingCount;
+    }
+}
@@ -0,0 +1,73 @@
+package com.project.mapapp.manager;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.model.dto.device.DeviceInfo;
+import com.project.mapapp.model.enums.ApplicationStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监护人 → 被监护人设备关系缓存
+ * <p>
+ * 监护人登录后每次进入页面都会拉取名下设备列表，这里按监护人缓存一次联表查询的结果。
+ * 申请确认、关系修改、设备信息修改时失效；过期时间兜底绕过服务层的直接改库。
+ */
+@Component
+public class GuardianWardCache {
+
+    @Value("${device.ward-cache.max-guardians:10000}")
+    private int maxGuardians;
+
+    @Value("${device.ward-cache.expire-minutes:10}")
+    private long expireMinutes;
+
+    private final DeviceMapper deviceMapper;
+    private LRUCache<String, List<DeviceInfo>> cache;
+
+    public GuardianWardCache(DeviceMapper deviceMapper) {
+        this.deviceMapper = deviceMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = CacheUtil.newLRUCache(maxGuardians, TimeUnit.MINUTES.toMillis(expireMinutes));
+    }
+
+    /**
+     * 获取监护人已绑定成功的全部被监护人设备，未命中时查库
+     */
+    public List<DeviceInfo> getWardDevices(String guardianId) {
+        if (guardianId == null) {
+            return Collections.emptyList();
+        }
+        return cache.get(guardianId, () -> Collections.unmodifiableList(
+                deviceMapper.selectWardDevicesByGuardianId(guardianId, ApplicationStatus.APPROVED.getCode())));
+    }
+
+    /**
+     * 监护关系发生变化时调用
+     */
+    public void invalidate(String guardianId) {
+        if (guardianId != null) {
+            cache.remove(guardianId);
+        }
+    }
+
+    /**
+     * 设备信息变化时无法确定涉及哪些监护人，整体失效
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,204 @@
+package com.project.mapapp.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备最新位置存储
+ * <p>
+ * 位置写入时同步更新本地 Map 和 Redis Hash（location:latest:{deviceId}），多节点共享同一份数据；
+ * 读取时本地条目在 localTtlMs 内直接返回，过期后回 Redis 刷新，两级都未命中才由调用方回源数据库。
+ */
+@Slf4j
+@Component
+public class LatestLocationStore {
+
+    private static final String REDIS_KEY_PREFIX = "location:latest:";
+
+    @Value("${location.latest.local-ttl-ms:1000}")
+    private long localTtlMs;
+
+    @Value("${location.latest.redis-expire-hours:72}")
+    private long redisExpireHours;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ConcurrentMap<String, LatestFix> local = new ConcurrentHashMap<>();
+
+    public LatestLocationStore(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 写入最新位置，比当前记录旧的点会被忽略
+     */
+    public void update(String deviceId, long guardianId, double latitude, double longitude,
+                       double accuracy, long timestamp) {
+        LatestFix fix = new LatestFix(guardianId, latitude, longitude, accuracy, timestamp, System.currentTimeMillis());
+        LatestFix merged = local.merge(deviceId, fix, (old, cur) -> cur.timestamp >= old.timestamp ? cur : old);
+        if (merged != fix) {
+            return;
+        }
+        try {
+            Map<byte[], byte[]> hash = new HashMap<>(8);
+            hash.put(bytes("guardianId"), bytes(String.valueOf(guardianId)));
+            hash.put(bytes("latitude"), bytes(String.valueOf(latitude)));
+            hash.put(bytes("longitude"), bytes(String.valueOf(longitude)));
+            hash.put(bytes("accuracy"), bytes(String.valueOf(accuracy)));
+            hash.put(bytes("timestamp"), bytes(String.valueOf(timestamp)));
+            byte[] key = bytes(REDIS_KEY_PREFIX + deviceId);
+            long expireSeconds = TimeUnit.HOURS.toSeconds(redisExpireHours);
+            // 写入和续期放在同一个 pipeline 里，一次往返
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hMSet(key, hash);
+                connection.keyCommands().expire(key, expireSeconds);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("最新位置写入Redis失败 - deviceId: {}, {}", deviceId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取最新位置，本地和 Redis 都没有时返回 null
+     */
+    public LatestFix get(String deviceId) {
+        LatestFix fix = local.get(deviceId);
+        long now = System.currentTimeMillis();
+        if (fix != null && now - fix.refreshedAt < localTtlMs) {
+            return fix;
+        }
+        LatestFix remote = loadFromRedis(deviceId, now);
+        if (remote == null) {
+            return fix;
+        }
+        return local.merge(deviceId, remote, (old, cur) -> cur.timestamp >= old.timestamp ? cur : old.refreshed(now));
+    }
+
+    /**
+     * 批量读取最新位置，本地过期或缺失的设备通过一次 Redis pipeline 读取；
+     * 两级都未命中的设备不在返回结果中
+     */
+    public Map<String, LatestFix> getAll(Collection<String> deviceIds) {
+        Map<String, LatestFix> result = new HashMap<>(deviceIds.size() * 2);
+        List<String> misses = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String deviceId : deviceIds) {
+            LatestFix fix = local.get(deviceId);
+            if (fix != null && now - fix.refreshedAt < localTtlMs) {
+                result.put(deviceId, fix);
+            } else {
+                misses.add(deviceId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        List<Object> hashes;
+        try {
+            hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String deviceId : misses) {
+                    connection.hashCommands().hGetAll((REDIS_KEY_PREFIX + deviceId).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("批量读取Redis最新位置失败: {}", e.getMessage());
+            hashes = null;
+        }
+        for (int i = 0; i < misses.size(); i++) {
+            String deviceId = misses.get(i);
+            LatestFix remote = hashes != null ? parse(deviceId, hashes.get(i), now) : null;
+            LatestFix fix = remote != null
+                    ? local.merge(deviceId, remote, (old, cur) -> cur.timestamp >= old.timestamp ? cur : old.refreshed(now))
+                    : local.get(deviceId);
+            if (fix != null) {
+                result.put(deviceId, fix);
+            }
+        }
+        return result;
+    }
+
+    private LatestFix loadFromRedis(String deviceId, long now) {
+        try {
+            return parse(deviceId, stringRedisTemplate.opsForHash().entries(REDIS_KEY_PREFIX + deviceId), now);
+        } catch (Exception e) {
+            log.warn("读取Redis最新位置失败 - deviceId: {}, {}", deviceId, e.getMessage());
+            return null;
+        }
+    }
+
+    private LatestFix parse(String deviceId, Object value, long now) {
+        try {
+            Map<?, ?> hash = (Map<?, ?>) value;
+            if (hash == null || hash.isEmpty()) {
+                return null;
+            }
+            return new LatestFix(
+                    Long.parseLong((String) hash.get("guardianId")),
+                    Double.parseDouble((String) hash.get("latitude")),
+                    Double.parseDouble((String) hash.get("longitude")),
+                    Double.parseDouble((String) hash.get("accuracy")),
+                    Long.parseLong((String) hash.get("timestamp")),
+                    now);
+        } catch (Exception e) {
+            log.warn("解析Redis最新位置失败 - deviceId: {}, {}", deviceId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 最新位置快照，全部为基本类型字段
+     */
+    public static final class LatestFix {
+        private final long guardianId;
+        private final double latitude;
+        private final double longitude;
+        private final double accuracy;
+        /**
+         * 定位时间（毫秒）
+         */
+        private final long timestamp;
+        /**
+         * 本地最近一次与 Redis 同步的时间（毫秒）
+         */
+        private final long refreshedAt;
+
+        private LatestFix(long guardianId, double latitude, double longitude, double accuracy,
+                          long timestamp, long refreshedAt) {
+            this.guardianId = guardianId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.timestamp = timestamp;
+            this.refreshedAt = refreshedAt;
+        }
+
+        private LatestFix refreshed(long now) {
+            return new LatestFix(guardianId, latitude, longitude, accuracy, timestamp, now);
+        }
+
+        public long getGuardianId() { return guardianId; }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public double getAccuracy() { return accuracy; }
+        public long getTimestamp() { return timestamp; }
+    }
+}
@@ -0,0 +1,284 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.utils.GeoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 设备实时位置的匀速模型卡尔曼平滑
+ * <p>
+ * 状态在以设备首点为原点的局部平面（米）上计算，量测为定位点，量测噪声取定位精度的平方。
+ * 匀速模型下东西、南北两个方向互不相关，协方差拆成两个 2×2 对称块，每个设备的全部状态只是一个 double[13]：
+ * <pre>
+ * [0] 原点纬度 [1] 原点经度 [2] 上次更新时间(ms)
+ * [3] x  [4] vx  [5] Pxx  [6] Pxv  [7] Pvv      东西方向
+ * [8] y  [9] vy  [10] Pyy [11] Pyv [12] Pvv     南北方向
+ * </pre>
+ * 间隔超过 resetGapSeconds 时以当前点重新初始化。状态定期写入 Redis（location:kalman:{deviceId}），
+ * 服务重启后设备第一次上报时按需恢复，过期的状态直接丢弃。只影响推送和最新位置，原始点照常落库。
+ */
+@Slf4j
+@Component
+public class LocationKalmanFilter {
+
+    private static final String REDIS_KEY_PREFIX = "location:kalman:";
+    private static final int STATE_SIZE = 13;
+    private static final int ORIGIN_LAT = 0;
+    private static final int ORIGIN_LON = 1;
+    private static final int TIME = 2;
+    private static final int AXIS_X = 3;
+    private static final int AXIS_Y = 8;
+
+    /**
+     * 初始速度方差（(m/s)²），相当于初始速度不确定度约 5m/s
+     */
+    private static final double INITIAL_VELOCITY_VARIANCE = 25;
+
+    @Value("${location.kalman.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 过程噪声（加速度谱密度，m²/s³），越大越跟手，越小越平滑
+     */
+    @Value("${location.kalman.process-noise:0.5}")
+    private double processNoise;
+
+    @Value("${location.kalman.min-accuracy-meters:3}")
+    private double minAccuracyMeters;
+
+    @Value("${location.kalman.reset-gap-seconds:300}")
+    private long resetGapSeconds;
+
+    @Value("${location.kalman.snapshot-interval-ms:5000}")
+    private long snapshotIntervalMs;
+
+    @Value("${location.kalman.redis-expire-hours:24}")
+    private long redisExpireHours;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ConcurrentMap<String, double[]> states = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService snapshotter;
+
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+    private final AtomicLong outOfOrder = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong snapshotFailures = new AtomicLong();
+
+    public LocationKalmanFilter(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-kalman-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 输入一个定位点，返回平滑后的 {纬度, 经度}；时间早于上次更新的点原样返回且不更新状态
+     */
+    public double[] smooth(String deviceId, double latitude, double longitude, double accuracy, long timeMillis) {
+        double[] s = states.computeIfAbsent(deviceId, this::restore);
+        double r = Math.max(accuracy, minAccuracyMeters);
+        r *= r;
+        synchronized (s) {
+            double dtMillis = timeMillis - s[TIME];
+            if (s[TIME] > 0 && dtMillis < 0) {
+                outOfOrder.incrementAndGet();
+                return new double[]{latitude, longitude};
+            }
+            if (s[TIME] <= 0 || dtMillis > resetGapSeconds * 1000) {
+                reset(s, latitude, longitude, r, timeMillis);
+                resets.incrementAndGet();
+                dirty.add(deviceId);
+                return new double[]{latitude, longitude};
+            }
+
+            double lonScale = GeoUtils.METERS_PER_DEGREE * Math.cos(Math.toRadians(s[ORIGIN_LAT]));
+            double mx = (longitude - s[ORIGIN_LON]) * lonScale;
+            double my = (latitude - s[ORIGIN_LAT]) * GeoUtils.METERS_PER_DEGREE;
+            double dt = dtMillis / 1000.0;
+            update(s, AXIS_X, mx, r, dt);
+            update(s, AXIS_Y, my, r, dt);
+            s[TIME] = timeMillis;
+            dirty.add(deviceId);
+            updates.incrementAndGet();
+            return new double[]{
+                    s[ORIGIN_LAT] + s[AXIS_Y] / GeoUtils.METERS_PER_DEGREE,
+                    s[ORIGIN_LON] + s[AXIS_X] / lonScale
+            };
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("devices", states.size());
+        stats.put("dirty", dirty.size());
+        stats.put("updates", updates.get());
+        stats.put("resets", resets.get());
+        stats.put("restored", restored.get());
+        stats.put("outOfOrder", outOfOrder.get());
+        stats.put("evicted", evicted.get());
+        stats.put("snapshotFailures", snapshotFailures.get());
+        return stats;
+    }
+
+    private static void reset(double[] s, double latitude, double longitude, double r, long timeMillis) {
+        s[ORIGIN_LAT] = latitude;
+        s[ORIGIN_LON] = longitude;
+        s[TIME] = timeMillis;
+        for (int axis : new int[]{AXIS_X, AXIS_Y}) {
+            s[axis] = 0;
+            s[axis + 1] = 0;
+            s[axis + 2] = r;
+            s[axis + 3] = 0;
+            s[axis + 4] = INITIAL_VELOCITY_VARIANCE;
+        }
+    }
+
+    /**
+     * 单个方向的预测 + 更新，状态 [p, v]，协方差 [[a, b], [b, c]]
+     */
+    private void update(double[] s, int i, double measured, double r, double dt) {
+        double p = s[i];
+        double v = s[i + 1];
+        double a = s[i + 2];
+        double b = s[i + 3];
+        double c = s[i + 4];
+
+        // 预测：F = [[1, dt], [0, 1]]，Q 为离散白噪声加速度模型
+        p += v * dt;
+        double dt2 = dt * dt;
+        double a1 = a + 2 * dt * b + dt2 * c + processNoise * dt2 * dt / 3;
+        double b1 = b + dt * c + processNoise * dt2 / 2;
+        double c1 = c + processNoise * dt;
+
+        // 更新：H = [1, 0]
+        double innovation = measured - p;
+        double sInv = 1 / (a1 + r);
+        double k0 = a1 * sInv;
+        double k1 = b1 * sInv;
+        s[i] = p + k0 * innovation;
+        s[i + 1] = v + k1 * innovation;
+        s[i + 2] = (1 - k0) * a1;
+        s[i + 3] = (1 - k0) * b1;
+        s[i + 4] = c1 - k1 * b1;
+    }
+
+    /**
+     * 设备首次出现时尝试从 Redis 恢复，没有或已过期时返回空状态
+     */
+    private double[] restore(String deviceId) {
+        double[] s = new double[STATE_SIZE];
+        if (!enabled) {
+            return s;
+        }
+        try {
+            String value = stringRedisTemplate.opsForValue().get(REDIS_KEY_PREFIX + deviceId);
+            if (value != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(value));
+                if (buffer.remaining() == STATE_SIZE * Double.BYTES) {
+                    buffer.asDoubleBuffer().get(s);
+                    restored.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("恢复卡尔曼状态失败 - deviceId: {}, {}", deviceId, e.getMessage());
+        }
+        return s;
+    }
+
+    private void snapshot() {
+        evictIdle();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> deviceIds = new ArrayList<>(dirty);
+        Map<byte[], byte[]> encoded = new LinkedHashMap<>(deviceIds.size() * 2);
+        for (String deviceId : deviceIds) {
+            dirty.remove(deviceId);
+            double[] s = states.get(deviceId);
+            if (s == null) {
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(STATE_SIZE * Double.BYTES);
+            synchronized (s) {
+                buffer.asDoubleBuffer().put(s);
+            }
+            encoded.put((REDIS_KEY_PREFIX + deviceId).getBytes(StandardCharsets.UTF_8),
+                    Base64.getEncoder().encode(buffer.array()));
+        }
+        long expireSeconds = TimeUnit.HOURS.toSeconds(redisExpireHours);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<byte[], byte[]> entry : encoded.entrySet()) {
+                    connection.stringCommands().setEx(entry.getKey(), expireSeconds, entry.getValue());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // 下一轮重试
+            dirty.addAll(deviceIds);
+            snapshotFailures.incrementAndGet();
+            log.warn("卡尔曼状态写入Redis失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 超过 resetGapSeconds 没有更新的设备下次上报时反正要重新初始化，直接移出内存；
+     * 还没写入 Redis 的留到写完之后再移除
+     */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - resetGapSeconds * 1000;
+        for (Map.Entry<String, double[]> entry : states.entrySet()) {
+            double[] s = entry.getValue();
+            boolean idle;
+            synchronized (s) {
+                idle = s[TIME] < cutoff;
+            }
+            if (idle && !dirty.contains(entry.getKey()) && states.remove(entry.getKey(), s)) {
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (snapshotter == null) {
+            return;
+        }
+        snapshotter.shutdownNow();
+        snapshot();
+    }
+}
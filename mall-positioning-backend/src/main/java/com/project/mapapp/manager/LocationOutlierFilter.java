@@ -0,0 +1,182 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.utils.GeoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上报位置离群点过滤
+ * <p>
+ * 在落库、推送和围栏校验之前按设备逐点判断：
+ * <ol>
+ *     <li>精度门限：定位精度差于 maxAccuracyMeters 的点不可信；</li>
+ *     <li>速度门限：以最近 windowSize 个可信点的中位数位置和中位数时间为参照（点数不足 3 时用上一个可信点），
+ *     扣除两点定位精度后的位移除以到参照时间的间隔超过 maxSpeedMps 视为跳点，单个漂移点不会把参照带偏。
+ *     中位数位置大约落后最新点半个窗口，时间也要取同一参照，否则匀速移动的设备会被算成数倍的速度。</li>
+ * </ol>
+ * 距上一个可信点超过 resetGapSeconds，或连续 maxConsecutiveRejects 个点都被判为跳点（说明设备确实换了位置），
+ * 直接接受当前点并以它重新建立窗口。每个设备的状态是固定大小的基本类型数组，判断过程不分配对象。
+ * 离群点直接丢弃，不落库、不推送、不参与围栏和统计，location_data 中的点都可以直接使用。
+ */
+@Slf4j
+@Component
+public class LocationOutlierFilter {
+
+    @Value("${location.outlier.enabled:false}")
+    private boolean enabled;
+
+    @Value("${location.outlier.max-accuracy-meters:200}")
+    private double maxAccuracyMeters;
+
+    @Value("${location.outlier.max-speed-mps:20}")
+    private double maxSpeedMps;
+
+    @Value("${location.outlier.window-size:5}")
+    private int windowSize;
+
+    @Value("${location.outlier.reset-gap-seconds:600}")
+    private long resetGapSeconds;
+
+    @Value("${location.outlier.max-consecutive-rejects:5}")
+    private int maxConsecutiveRejects;
+
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong lowAccuracy = new AtomicLong();
+    private final AtomicLong tooFast = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    /**
+     * 判断点是否可信，可信的点会进入该设备的参照窗口；点必须按时间顺序传入
+     */
+    public boolean accept(String deviceId, LocationData location) {
+        if (!enabled) {
+            return true;
+        }
+        double latitude = location.getLatitude().doubleValue();
+        double longitude = location.getLongitude().doubleValue();
+        double accuracy = location.getAccuracy() != null ? location.getAccuracy().doubleValue() : 0;
+        long time = location.getCreate_time().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        if (accuracy > maxAccuracyMeters) {
+            lowAccuracy.incrementAndGet();
+            log.debug("丢弃低精度位置 - deviceId: {}, accuracy: {}", deviceId, accuracy);
+            return false;
+        }
+
+        Window w = windows.computeIfAbsent(deviceId, k -> new Window(Math.max(windowSize, 1)));
+        synchronized (w) {
+            if (w.count > 0 && time < w.lastTime) {
+                // 乱序的旧点无法与窗口比较，放行但不更新窗口
+                accepted.incrementAndGet();
+                return true;
+            }
+            if (w.count == 0 || time - w.lastTime > resetGapSeconds * 1000 || w.rejects >= maxConsecutiveRejects) {
+                if (w.count > 0) {
+                    resets.incrementAndGet();
+                }
+                w.reset();
+                w.add(latitude, longitude, accuracy, time);
+                accepted.incrementAndGet();
+                return true;
+            }
+
+            double refLat;
+            double refLon;
+            double refTime;
+            if (w.count >= 3) {
+                refLat = w.median(w.lats);
+                refLon = w.median(w.lons);
+                refTime = w.median(w.times);
+            } else {
+                refLat = w.lastLat;
+                refLon = w.lastLon;
+                refTime = w.lastTime;
+            }
+            double distance = GeoUtils.haversineMeters(refLat, refLon, latitude, longitude);
+            double seconds = Math.max(1, (time - refTime) / 1000.0);
+            double speed = Math.max(0, distance - accuracy - w.lastAccuracy) / seconds;
+            if (speed > maxSpeedMps) {
+                w.rejects++;
+                tooFast.incrementAndGet();
+                log.debug("丢弃跳点 - deviceId: {}, 位移: {}m, 速度: {}m/s", deviceId, Math.round(distance), Math.round(speed));
+                return false;
+            }
+            w.add(latitude, longitude, accuracy, time);
+            accepted.incrementAndGet();
+            return true;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("devices", windows.size());
+        stats.put("accepted", accepted.get());
+        stats.put("lowAccuracy", lowAccuracy.get());
+        stats.put("tooFast", tooFast.get());
+        stats.put("resets", resets.get());
+        return stats;
+    }
+
+    /**
+     * 最近可信点的环形窗口
+     */
+    private static final class Window {
+        private final double[] lats;
+        private final double[] lons;
+        private final double[] times;
+        private final double[] scratch;
+        private int count;
+        private int next;
+        private double lastLat;
+        private double lastLon;
+        private double lastAccuracy;
+        private long lastTime;
+        private int rejects;
+
+        private Window(int size) {
+            lats = new double[size];
+            lons = new double[size];
+            times = new double[size];
+            scratch = new double[size];
+        }
+
+        private void reset() {
+            count = 0;
+            next = 0;
+            rejects = 0;
+        }
+
+        private void add(double latitude, double longitude, double accuracy, long time) {
+            lats[next] = latitude;
+            lons[next] = longitude;
+            times[next] = time;
+            next = (next + 1) % lats.length;
+            count = Math.min(count + 1, lats.length);
+            lastLat = latitude;
+            lastLon = longitude;
+            lastAccuracy = accuracy;
+            lastTime = time;
+            rejects = 0;
+        }
+
+        private double median(double[] values) {
+            System.arraycopy(values, 0, scratch, 0, count);
+            Arrays.sort(scratch, 0, count);
+            int mid = count / 2;
+            return count % 2 == 1 ? scratch[mid] : (scratch[mid - 1] + scratch[mid]) / 2;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.mapper.LocationPartitionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * location_data 分区自动维护
+ * <p>
+ * 表按 create_time 做 RANGE COLUMNS 分区（见 sql/location_data_partition.sql），分区名 pYYYYMM / pYYYYMMDD 对应一个周期。
+ * 启动后及每隔 checkIntervalHours：
+ * <ol>
+ *     <li>从 p_future 中依次拆出新分区，保证当前周期之后至少还有 futurePartitions 个分区，写入永远不会落进 p_future；</li>
+ *     <li>早于保留期（retention 个周期）的分区按需先复制到 location_data_archive，再整个 DROP，不产生逐行删除。</li>
+ * </ol>
+ * 名字不符合周期格式的分区（p_history、p_future）不会被自动删除。归档用 INSERT IGNORE，归档成功而 DROP 失败时下一轮可以安全重试。
+ * 多节点部署时通过 Redis 租约锁（自动续期）保证同一时间只有一个节点执行 DDL，大分区归档耗时超过锁的 ttl 也不会被其他节点抢入。
+ */
+@Slf4j
+@Component
+public class LocationPartitionManager {
+
+    private static final String LOCK_KEY = "location:partition:lock";
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter LESS_THAN_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${location.partition.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 分区粒度：day / month
+     */
+    @Value("${location.partition.granularity:month}")
+    private String granularity;
+
+    @Value("${location.partition.future-partitions:3}")
+    private int futurePartitions;
+
+    /**
+     * 保留的周期数（含当前周期）
+     */
+    @Value("${location.partition.retention:12}")
+    private int retention;
+
+    @Value("${location.partition.archive:false}")
+    private boolean archive;
+
+    @Value("${location.partition.check-interval-hours:6}")
+    private long checkIntervalHours;
+
+    private final LocationPartitionMapper locationPartitionMapper;
+    private final RedisLeaseLock redisLeaseLock;
+
+    private ScheduledExecutorService scheduler;
+    private volatile LocalDateTime lastRunAt;
+    private volatile int created;
+    private volatile int dropped;
+    private volatile String lastError;
+
+    public LocationPartitionManager(LocationPartitionMapper locationPartitionMapper,
+                                    RedisLeaseLock redisLeaseLock) {
+        this.locationPartitionMapper = locationPartitionMapper;
+        this.redisLeaseLock = redisLeaseLock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-partition");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintain, 0, checkIntervalHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * 执行一次分区维护
+     */
+    public void maintain() {
+        RedisLeaseLock.Lease lease;
+        try {
+            lease = redisLeaseLock.tryAcquire(LOCK_KEY, 10, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("获取分区维护锁失败: {}", e.getMessage());
+            return;
+        }
+        if (lease == null) {
+            return;
+        }
+        try {
+            Period period = Period.of(granularity);
+            List<String> partitions = locationPartitionMapper.selectPartitionNames();
+            if (!partitions.contains(FUTURE_PARTITION)) {
+                log.warn("location_data 未按 sql/location_data_partition.sql 分区，跳过分区维护");
+                return;
+            }
+            LocalDate current = period.floor(LocalDate.now());
+            createFuturePartitions(period, partitions, current);
+            dropExpiredPartitions(period, partitions, current);
+            lastError = null;
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            log.error("location_data 分区维护失败", e);
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lease.close();
+        }
+    }
+
+    private void createFuturePartitions(Period period, List<String> partitions, LocalDate current) {
+        // 只能在最后一个周期分区之后追加，中间缺的周期不补
+        LocalDate next = current;
+        for (String name : partitions) {
+            LocalDate start = period.parse(name);
+            if (start != null && !start.isBefore(next)) {
+                next = period.next(start);
+            }
+        }
+        LocalDate until = period.plus(current, futurePartitions);
+        for (; !next.isAfter(until); next = period.next(next)) {
+            String name = period.name(next);
+            String lessThan = period.next(next).atStartOfDay().format(LESS_THAN_FORMATTER);
+            locationPartitionMapper.addPartition(name, lessThan);
+            created++;
+            log.info("location_data 新建分区 {} (< {})", name, lessThan);
+        }
+    }
+
+    private void dropExpiredPartitions(Period period, List<String> partitions, LocalDate current) {
+        LocalDate cutoff = period.plus(current, -(Math.max(retention, 1) - 1));
+        for (String name : partitions) {
+            LocalDate start = period.parse(name);
+            if (start == null || !start.isBefore(cutoff)) {
+                continue;
+            }
+            if (archive) {
+                long rows = locationPartitionMapper.archivePartition(name);
+                log.info("location_data 分区 {} 已归档 {} 行", name, rows);
+            }
+            locationPartitionMapper.dropPartition(name);
+            dropped++;
+            log.info("location_data 删除过期分区 {}", name);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("granularity", granularity);
+        stats.put("futurePartitions", futurePartitions);
+        stats.put("retention", retention);
+        stats.put("archive", archive);
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("created", created);
+        stats.put("dropped", dropped);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 分区周期
+     */
+    private enum Period {
+        DAY("yyyyMMdd"),
+        MONTH("yyyyMM");
+
+        private final String pattern;
+        private final DateTimeFormatter formatter;
+
+        Period(String pattern) {
+            this.pattern = pattern;
+            this.formatter = DateTimeFormatter.ofPattern(pattern);
+        }
+
+        static Period of(String granularity) {
+            return "day".equalsIgnoreCase(granularity) ? DAY : MONTH;
+        }
+
+        LocalDate floor(LocalDate date) {
+            return this == DAY ? date : date.withDayOfMonth(1);
+        }
+
+        LocalDate plus(LocalDate start, long periods) {
+            return this == DAY ? start.plusDays(periods) : start.plusMonths(periods);
+        }
+
+        LocalDate next(LocalDate start) {
+            return plus(start, 1);
+        }
+
+        String name(LocalDate start) {
+            return "p" + start.format(formatter);
+        }
+
+        /**
+         * 分区名对应周期的起始日期，不是本粒度的周期分区时返回 null
+         */
+        LocalDate parse(String name) {
+            if (name == null || name.length() != pattern.length() + 1 || name.charAt(0) != 'p') {
+                return null;
+            }
+            String digits = name.substring(1);
+            try {
+                return this == DAY
+                        ? LocalDate.parse(digits, formatter)
+                        : LocalDate.parse(digits + "01", DateTimeFormatter.ofPattern("yyyyMMdd"));
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
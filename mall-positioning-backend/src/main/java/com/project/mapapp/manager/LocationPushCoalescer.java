@@ -0,0 +1,146 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.service.WebSocketService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 位置推送合并
+ * <p>
+ * 每个设备一个待推送槽位，只保留最新的一个位置，按 maxRateHz 限速推送给该设备的全部监护人；
+ * 设备上报再快，每个监护人收到的位置帧也不超过限速，中间的点直接被覆盖。
+ * 距上次推送已超过一个间隔时在调用线程立即推送，否则交给定时线程在间隔到达时推送。
+ * 警报不经过这里。
+ */
+@Slf4j
+@Component
+public class LocationPushCoalescer {
+
+    @Value("${websocket.coalesce.enabled:true}")
+    private boolean enabled;
+
+    @Value("${websocket.coalesce.max-rate-hz:2}")
+    private double maxRateHz;
+
+    private final WebSocketService webSocketService;
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    private long intervalMs;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong pushed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public LocationPushCoalescer(WebSocketService webSocketService) {
+        this.webSocketService = webSocketService;
+    }
+
+    @PostConstruct
+    public void init() {
+        intervalMs = maxRateHz > 0 ? (long) Math.ceil(1000 / maxRateHz) : 0;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-push-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 提交设备的最新位置，同一设备尚未推送的旧位置会被覆盖
+     */
+    public void submit(String deviceId, Collection<Long> guardianIds, LocationResponseDTO location) {
+        submitted.incrementAndGet();
+        if (!enabled || intervalMs <= 0 || deviceId == null) {
+            push(guardianIds, location);
+            return;
+        }
+        Slot slot = slots.computeIfAbsent(deviceId, k -> new Slot());
+        if (slot.pending.getAndSet(new Pending(guardianIds, location)) != null) {
+            coalesced.incrementAndGet();
+        }
+        schedule(slot);
+    }
+
+    private void schedule(Slot slot) {
+        if (!slot.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = slot.lastPushedAt + intervalMs - System.currentTimeMillis();
+        if (delay <= 0) {
+            flush(slot);
+            return;
+        }
+        try {
+            flusher.schedule(() -> flush(slot), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flush(slot);
+        }
+    }
+
+    private void flush(Slot slot) {
+        try {
+            Pending pending = slot.pending.getAndSet(null);
+            if (pending != null) {
+                slot.lastPushedAt = System.currentTimeMillis();
+                push(pending.guardianIds, pending.location);
+            }
+        } catch (Exception e) {
+            log.error("位置推送失败", e);
+        } finally {
+            slot.scheduled.set(false);
+        }
+        // 推送期间又有新位置进来时补排一次
+        if (slot.pending.get() != null) {
+            schedule(slot);
+        }
+    }
+
+    private void push(Collection<Long> guardianIds, LocationResponseDTO location) {
+        webSocketService.notifyGuardians(guardianIds, location);
+        pushed.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxRateHz", maxRateHz);
+        stats.put("devices", slots.size());
+        stats.put("submitted", submitted.get());
+        stats.put("pushed", pushed.get());
+        stats.put("coalesced", coalesced.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flusher.shutdownNow();
+    }
+
+    private static final class Slot {
+        private final AtomicReference<Pending> pending = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastPushedAt;
+    }
+
+    private static final class Pending {
+        private final Collection<Long> guardianIds;
+        private final LocationResponseDTO location;
+
+        private Pending(Collection<Long> guardianIds, LocationResponseDTO location) {
+            this.guardianIds = guardianIds;
+            this.location = location;
+        }
+    }
+}
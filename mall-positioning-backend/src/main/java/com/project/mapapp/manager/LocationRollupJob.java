@@ -0,0 +1,107 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.service.LocationRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 位置汇总定时任务
+ * <p>
+ * 每隔 intervalSeconds 从水位开始处理新写入的位置，一批满了就继续下一批直到追平；
+ * 多节点部署时通过 Redis 租约锁避免多个节点空转竞争，正确性由事务内锁定水位行保证。
+ */
+@Slf4j
+@Component
+public class LocationRollupJob {
+
+    private static final String LOCK_KEY = "location:rollup:lock";
+
+    @Value("${location.rollup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${location.rollup.interval-seconds:60}")
+    private long intervalSeconds;
+
+    @Value("${location.rollup.batch-size:5000}")
+    private int batchSize;
+
+    private final LocationRollupService locationRollupService;
+    private final RedisLeaseLock redisLeaseLock;
+
+    private ScheduledExecutorService scheduler;
+    private volatile LocalDateTime lastRunAt;
+    private final AtomicLong processedRows = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public LocationRollupJob(LocationRollupService locationRollupService, RedisLeaseLock redisLeaseLock) {
+        this.locationRollupService = locationRollupService;
+        this.redisLeaseLock = redisLeaseLock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-rollup");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void run() {
+        RedisLeaseLock.Lease lease;
+        try {
+            lease = redisLeaseLock.tryAcquire(LOCK_KEY, 5, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("获取位置汇总锁失败: {}", e.getMessage());
+            return;
+        }
+        if (lease == null) {
+            return;
+        }
+        try {
+            int processed;
+            do {
+                processed = locationRollupService.rollupNextBatch();
+                processedRows.addAndGet(processed);
+            } while (processed >= batchSize && !lease.isLost() && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error("位置汇总失败", e);
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lease.close();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("processedRows", processedRows.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
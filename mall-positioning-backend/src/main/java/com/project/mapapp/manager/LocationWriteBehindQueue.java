@@ -0,0 +1,276 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.mapper.LocationDataMapper;
+import com.project.mapapp.model.entity.LocationData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 位置数据异步写入管道（write-behind）
+ * <p>
+ * 上报的位置先进入有界内存队列并立即确认，由若干落库线程按数量/时间批量写入 location_data；
+ * 队列按 deviceId 哈希分片，每个分片只有一个落库线程，同一设备的行按上报顺序提交。
+ * 推送和围栏校验各自在独立的单线程阶段中执行，保证同一设备的处理顺序；围栏阶段积压满时调用线程阻塞等待，
+ * 不会在调用线程里插队执行。
+ * 队列满时在 offerTimeoutMs 内等待，仍无空位则拒绝上报（背压）；关闭时会把剩余数据全部落库。
+ */
+@Slf4j
+@Component
+public class LocationWriteBehindQueue {
+
+    @Value("${location.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${location.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${location.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${location.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${location.write-behind.drainer-threads:2}")
+    private int drainerThreads;
+
+    @Value("${location.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private final LocationDataMapper locationDataMapper;
+
+    private List<BlockingQueue<LocationData>> shards;
+    private ExecutorService drainers;
+    private ThreadPoolExecutor pushStage;
+    private ThreadPoolExecutor fenceStage;
+    private volatile boolean running;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public LocationWriteBehindQueue(LocationDataMapper locationDataMapper) {
+        this.locationDataMapper = locationDataMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int shardCount = Math.max(drainerThreads, 1);
+        int shardCapacity = Math.max((capacity + shardCount - 1) / shardCount, 1);
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayBlockingQueue<>(shardCapacity));
+        }
+        running = true;
+
+        drainers = Executors.newFixedThreadPool(shardCount, namedDaemon("location-drainer"));
+        for (BlockingQueue<LocationData> shard : shards) {
+            drainers.execute(() -> drainLoop(shard));
+        }
+        // 推送丢最旧的即可；围栏校验不能丢也不能乱序，满了阻塞调用线程直到有空位
+        pushStage = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(capacity), namedDaemon("location-push"),
+                new ThreadPoolExecutor.DiscardOldestPolicy());
+        fenceStage = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(capacity), namedDaemon("location-fence"),
+                (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("围栏校验阶段已关闭");
+                    }
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("等待围栏校验队列时被中断", e);
+                    }
+                });
+        log.info("位置异步写入已启用 - 容量: {}, 批大小: {}, 刷新间隔: {}ms, 落库线程: {}",
+                capacity, batchSize, flushIntervalMs, drainerThreads);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 放入写入队列，队列满且等待超时返回 false
+     */
+    public boolean offer(LocationData location) {
+        if (!running) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            if (shardOf(location).offer(location, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                enqueued.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    private BlockingQueue<LocationData> shardOf(LocationData location) {
+        String deviceId = location.getDevice_id();
+        int hash = deviceId != null ? deviceId.hashCode() : 0;
+        return shards.get(Math.floorMod(hash ^ (hash >>> 16), shards.size()));
+    }
+
+    /**
+     * 依次放入写入队列，返回成功入队的条数（遇到第一次拒绝即停止，保证入队的是前缀）
+     */
+    public int offerAll(List<LocationData> locations) {
+        int accepted = 0;
+        for (LocationData location : locations) {
+            if (!offer(location)) {
+                rejected.addAndGet(locations.size() - accepted - 1);
+                break;
+            }
+            accepted++;
+        }
+        return accepted;
+    }
+
+    public void submitPush(Runnable task) {
+        pushStage.execute(task);
+    }
+
+    public void submitFence(Runnable task) {
+        fenceStage.execute(task);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        int queueDepth = 0;
+        for (BlockingQueue<LocationData> shard : shards) {
+            queueDepth += shard.size();
+        }
+        stats.put("queueDepth", queueDepth);
+        stats.put("shards", shards.size());
+        stats.put("capacity", capacity);
+        stats.put("enqueued", enqueued.get());
+        stats.put("rejected", rejected.get());
+        stats.put("persisted", persisted.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        stats.put("pushStageDepth", pushStage.getQueue().size());
+        stats.put("fenceStageDepth", fenceStage.getQueue().size());
+        return stats;
+    }
+
+    private void drainLoop(BlockingQueue<LocationData> queue) {
+        List<LocationData> buffer = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LocationData first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                buffer.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (buffer.size() < batchSize) {
+                    if (queue.drainTo(buffer, batchSize - buffer.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    LocationData next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    buffer.add(next);
+                }
+                flush(buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("位置批量落库线程异常", e);
+            } finally {
+                buffer.clear();
+            }
+        }
+    }
+
+    private void flush(List<LocationData> buffer) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        try {
+            locationDataMapper.insertBatch(buffer);
+            persisted.addAndGet(buffer.size());
+            batches.incrementAndGet();
+        } catch (Exception e) {
+            // 批量失败时逐条重试，只丢弃真正写不进去的行
+            log.error("位置批量落库失败，改为逐条写入 - 条数: {}", buffer.size(), e);
+            for (LocationData location : buffer) {
+                try {
+                    locationDataMapper.insert(location);
+                    persisted.incrementAndGet();
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                    log.error("位置落库失败 - deviceId: {}", location.getDevice_id(), ex);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        try {
+            drainers.shutdown();
+            if (!drainers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("落库线程未在10秒内结束");
+            }
+            // 兜底：把仍在队列里的数据在当前线程写完
+            List<LocationData> rest = new ArrayList<>(batchSize);
+            for (BlockingQueue<LocationData> shard : shards) {
+                while (shard.drainTo(rest, batchSize) > 0) {
+                    flush(rest);
+                    rest.clear();
+                }
+            }
+            pushStage.shutdown();
+            fenceStage.shutdown();
+            fenceStage.awaitTermination(5, TimeUnit.SECONDS);
+            log.info("位置异步写入已关闭 - 累计落库: {}, 失败: {}", persisted.get(), failed.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory namedDaemon(String prefix) {
+        AtomicLong seq = new AtomicLong();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.project.mapapp.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Redis 的租约锁
+ * <p>
+ * 锁的值是本次加锁的随机令牌，续期和释放都先比对令牌，不会误删其他节点在本节点租约过期后拿到的锁。
+ * 持有期间每隔 ttl/3 自动续期，任务执行时间不受 ttl 限制；节点宕机时锁在 ttl 后自动失效。
+ */
+@Slf4j
+@Component
+public class RedisLeaseLock {
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "redis-lease-renewer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RedisLeaseLock(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 尝试加锁，成功返回租约（用完必须 close），锁已被占用时返回 null；Redis 异常直接抛出
+     */
+    public Lease tryAcquire(String key, long ttl, TimeUnit unit) {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(key, token, ttl, unit);
+        if (!Boolean.TRUE.equals(locked)) {
+            return null;
+        }
+        return new Lease(key, token, unit.toMillis(ttl));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        renewer.shutdownNow();
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final String key;
+        private final String token;
+        private final ScheduledFuture<?> renewal;
+        private volatile boolean lost;
+
+        private Lease(String key, String token, long ttlMillis) {
+            this.key = key;
+            this.token = token;
+            long period = Math.max(ttlMillis / 3, 1);
+            this.renewal = renewer.scheduleWithFixedDelay(() -> renew(ttlMillis), period, period, TimeUnit.MILLISECONDS);
+        }
+
+        private void renew(long ttlMillis) {
+            try {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                        token, String.valueOf(ttlMillis));
+                if (renewed == null || renewed == 0) {
+                    lost = true;
+                    renewal.cancel(false);
+                    log.warn("锁 {} 已被其他节点持有，停止续期", key);
+                }
+            } catch (Exception e) {
+                log.warn("锁 {} 续期失败: {}", key, e.getMessage());
+            }
+        }
+
+        /**
+         * 续期时发现锁已不属于本节点，长任务应尽快停止
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        @Override
+        public void close() {
+            renewal.cancel(false);
+            try {
+                stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), token);
+            } catch (Exception e) {
+                log.debug("释放锁 {} 失败", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.utils.GeoUtils;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 在线停留点识别（距离 / 时间阈值法）
+ * <p>
+ * 每个设备维护一个候选簇：以簇内第一个点为锚点，后续点离锚点不超过 radiusMeters 就并入簇，
+ * 否则簇结束、以当前点为新锚点；与上一个点间隔超过 closeAfterSeconds 时同样结束当前簇（设备静默期间的位置未知）。
+ * 簇的时间跨度达到 minStaySeconds 即构成停留点并产生 OPENED 事件，停留持续到 dwellAlertSeconds 时产生一次 DWELL 事件，
+ * 结束时产生 CLOSED 事件（只有构成停留点的簇才会产生）。
+ * 设备静默时不会有新点触发结束，由 {@link #sweep} 定时关闭超时的簇，并为进行中且有变化的停留产生 PROGRESS 事件，
+ * 调用方据此持续更新停留记录，服务重启时进行中的停留最多丢失一个巡检周期的尾巴。
+ * 状态只有几个基本类型字段，只在产生事件时分配对象；时间早于上一个点的乱序点直接忽略。
+ */
+@Component
+public class StayPointDetector {
+
+    @Value("${location.stay.radius-meters:50}")
+    private double radiusMeters;
+
+    @Value("${location.stay.min-stay-seconds:300}")
+    private long minStaySeconds;
+
+    @Value("${location.stay.dwell-alert-seconds:1200}")
+    private long dwellAlertSeconds;
+
+    @Value("${location.stay.close-after-seconds:600}")
+    private long closeAfterSeconds;
+
+    private final ConcurrentMap<String, Cluster> clusters = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一个点
+     *
+     * @return 停留开始、达到报警时长或结束时返回事件，否则返回 null
+     */
+    public Stay observe(String deviceId, double latitude, double longitude, long timeMillis) {
+        while (true) {
+            Cluster c = clusters.computeIfAbsent(deviceId, Cluster::new);
+            synchronized (c) {
+                if (c.removed) {
+                    // 刚被巡检移除，重新取
+                    continue;
+                }
+                return observe(c, latitude, longitude, timeMillis);
+            }
+        }
+    }
+
+    private Stay observe(Cluster c, double latitude, double longitude, long timeMillis) {
+        if (c.count > 0 && timeMillis < c.lastTime) {
+            return null;
+        }
+        if (c.count > 0 && timeMillis - c.lastTime <= closeAfterSeconds * 1000
+                && GeoUtils.haversineMeters(c.anchorLat, c.anchorLon, latitude, longitude) <= radiusMeters) {
+            c.sumLat += latitude;
+            c.sumLon += longitude;
+            c.count++;
+            c.lastTime = timeMillis;
+            c.dirty = true;
+            long span = timeMillis - c.startTime;
+            boolean opening = !c.opened && span >= minStaySeconds * 1000;
+            if (opening) {
+                c.opened = true;
+            }
+            if (c.opened && !c.alerted && span >= dwellAlertSeconds * 1000) {
+                c.alerted = true;
+                c.dirty = false;
+                return c.toStay(Stay.Kind.DWELL);
+            }
+            if (opening) {
+                c.dirty = false;
+                return c.toStay(Stay.Kind.OPENED);
+            }
+            return null;
+        }
+
+        Stay closed = c.count > 0 && c.opened ? c.toStay(Stay.Kind.CLOSED) : null;
+        c.anchorLat = c.sumLat = latitude;
+        c.anchorLon = c.sumLon = longitude;
+        c.startTime = c.lastTime = timeMillis;
+        c.count = 1;
+        c.opened = false;
+        c.alerted = false;
+        c.dirty = false;
+        return closed;
+    }
+
+    /**
+     * 巡检：最后一个点早于 closeAfterSeconds 的簇结束并移出内存（构成停留的产生 CLOSED），
+     * 仍在进行且自上次事件后有新点的停留产生 PROGRESS
+     */
+    public List<Stay> sweep(long nowMillis) {
+        List<Stay> events = new ArrayList<>();
+        long cutoff = nowMillis - closeAfterSeconds * 1000;
+        for (Map.Entry<String, Cluster> entry : clusters.entrySet()) {
+            Cluster c = entry.getValue();
+            synchronized (c) {
+                if (c.lastTime < cutoff) {
+                    if (c.count > 0 && c.opened) {
+                        events.add(c.toStay(Stay.Kind.CLOSED));
+                    }
+                    c.removed = true;
+                    clusters.remove(entry.getKey(), c);
+                } else if (c.opened && c.dirty) {
+                    c.dirty = false;
+                    events.add(c.toStay(Stay.Kind.PROGRESS));
+                }
+            }
+        }
+        return events;
+    }
+
+    public long getDwellAlertSeconds() {
+        return dwellAlertSeconds;
+    }
+
+    public int size() {
+        return clusters.size();
+    }
+
+    private static final class Cluster {
+        private final String deviceId;
+        private double anchorLat;
+        private double anchorLon;
+        private double sumLat;
+        private double sumLon;
+        private int count;
+        private long startTime;
+        private long lastTime;
+        private boolean opened;
+        private boolean alerted;
+        private boolean dirty;
+        private boolean removed;
+
+        private Cluster(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        private Stay toStay(Stay.Kind kind) {
+            return new Stay(kind, deviceId, sumLat / count, sumLon / count, startTime, lastTime, count);
+        }
+    }
+
+    /**
+     * 停留事件，同一次停留的各个事件 arrivedAt 相同，可按 (设备, arrivedAt) 幂等写入
+     */
+    @Getter
+    public static final class Stay {
+
+        public enum Kind {
+            /**
+             * 簇的时间跨度刚达到 minStaySeconds
+             */
+            OPENED,
+            /**
+             * 停留进行中，位置或时长有更新
+             */
+            PROGRESS,
+            /**
+             * 停留进行中且刚达到报警时长
+             */
+            DWELL,
+            /**
+             * 停留结束
+             */
+            CLOSED
+        }
+
+        private final Kind kind;
+        private final String deviceId;
+        private final double latitude;
+        private final double longitude;
+        private final long arrivedAt;
+        private final long lastSeenAt;
+        private final int points;
+
+        private Stay(Kind kind, String deviceId, double latitude, double longitude, long arrivedAt, long lastSeenAt,
+                     int points) {
+            this.kind = kind;
+            this.deviceId = deviceId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.arrivedAt = arrivedAt;
+            this.lastSeenAt = lastSeenAt;
+            this.points = points;
+        }
+    }
+}
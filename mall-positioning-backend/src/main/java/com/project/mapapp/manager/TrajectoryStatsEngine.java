@@ -0,0 +1,144 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.enums.MotionState;
+import com.project.mapapp.model.vo.TrajectoryStatsVO;
+import com.project.mapapp.utils.GeoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 设备实时轨迹统计
+ * <p>
+ * 每个设备只保存一组基本类型字段，每来一个点 O(1) 更新：haversine 累计距离、EWMA 平滑速度、
+ * 最近一次有效位移的方向、距最近一次移动的时间。热路径上除首次出现设备外不分配对象。
+ * 静止判定：点始终落在锚点 stationaryRadiusMeters 范围内超过 stationarySeconds 即为静止，
+ * 离开锚点范围即恢复移动并以当前点为新锚点。时间早于上一个点的乱序点直接忽略。
+ */
+@Component
+public class TrajectoryStatsEngine {
+
+    /**
+     * 两点间位移小于该值时不更新方向，避免原地抖动时方向乱跳
+     */
+    private static final double MIN_HEADING_DISTANCE_METERS = 2;
+
+    @Value("${location.stats.ewma-alpha:0.3}")
+    private double alpha;
+
+    @Value("${location.stats.stationary-radius-meters:15}")
+    private double stationaryRadiusMeters;
+
+    @Value("${location.stats.stationary-seconds:120}")
+    private long stationarySeconds;
+
+    @Value("${location.stats.max-gap-seconds:600}")
+    private long maxGapSeconds;
+
+    private final ConcurrentMap<String, DeviceStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一个点
+     *
+     * @return 运动状态发生变化时返回新状态，否则返回 null
+     */
+    public MotionState observe(String deviceId, double latitude, double longitude, long timeMillis) {
+        DeviceStats s = stats.computeIfAbsent(deviceId, k -> new DeviceStats());
+        synchronized (s) {
+            if (s.points == 0) {
+                s.latitude = s.anchorLat = latitude;
+                s.longitude = s.anchorLon = longitude;
+                s.time = s.lastMovedAt = timeMillis;
+                s.points = 1;
+                return null;
+            }
+            if (timeMillis <= s.time) {
+                return null;
+            }
+
+            long dt = timeMillis - s.time;
+            double distance = GeoUtils.haversineMeters(s.latitude, s.longitude, latitude, longitude);
+            s.distance += distance;
+            if (dt > maxGapSeconds * 1000) {
+                // 间隔太久，瞬时速度没有意义，重新开始平滑
+                s.speed = 0;
+            } else {
+                double instant = distance * 1000 / dt;
+                s.speed = alpha * instant + (1 - alpha) * s.speed;
+            }
+            if (distance >= MIN_HEADING_DISTANCE_METERS) {
+                s.heading = bearing(s.latitude, s.longitude, latitude, longitude);
+            }
+            s.latitude = latitude;
+            s.longitude = longitude;
+            s.time = timeMillis;
+            s.points++;
+
+            MotionState transition = null;
+            if (GeoUtils.haversineMeters(s.anchorLat, s.anchorLon, latitude, longitude) > stationaryRadiusMeters) {
+                s.anchorLat = latitude;
+                s.anchorLon = longitude;
+                s.lastMovedAt = timeMillis;
+                if (s.stationary) {
+                    s.stationary = false;
+                    transition = MotionState.MOVING;
+                }
+            } else if (!s.stationary && timeMillis - s.lastMovedAt >= stationarySeconds * 1000) {
+                s.stationary = true;
+                transition = MotionState.STATIONARY;
+            }
+            return transition;
+        }
+    }
+
+    /**
+     * 当前统计快照，设备没有数据时返回 null
+     */
+    public TrajectoryStatsVO snapshot(String deviceId) {
+        DeviceStats s = stats.get(deviceId);
+        if (s == null) {
+            return null;
+        }
+        TrajectoryStatsVO vo = new TrajectoryStatsVO();
+        vo.setDeviceId(deviceId);
+        synchronized (s) {
+            vo.setDistanceMeters(s.distance);
+            vo.setSpeedMps(s.speed);
+            vo.setHeadingDegrees(s.heading);
+            vo.setState(s.stationary ? MotionState.STATIONARY : MotionState.MOVING);
+            vo.setStillSeconds(Math.max(0, (System.currentTimeMillis() - s.lastMovedAt) / 1000));
+            vo.setUpdatedAt(s.time);
+            vo.setPoints(s.points);
+        }
+        return vo;
+    }
+
+    public int size() {
+        return stats.size();
+    }
+
+    private static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dLon) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLon);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    private static final class DeviceStats {
+        private double latitude;
+        private double longitude;
+        private long time;
+        private long points;
+        private double distance;
+        private double speed;
+        private double heading;
+        private double anchorLat;
+        private double anchorLon;
+        private long lastMovedAt;
+        private boolean stationary;
+    }
+}
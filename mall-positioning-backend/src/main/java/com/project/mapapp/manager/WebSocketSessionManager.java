@@ -1,21 +1,92 @@
 package com.project.mapapp.manager;
 
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.websocket.OutboundSessionDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 @Service
 public class WebSocketSessionManager {
-    private final ConcurrentMap<Long, ConcurrentMap<String, WebSocketSession>> sessions = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, ScheduledFuture<?>> heartbeatTasks = new ConcurrentHashMap<>();
 
-    public void addSession(Long guardianId, String deviceId, WebSocketSession session) {
+    @Value("${websocket.outbound.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${websocket.outbound.alert-queue-limit:256}")
+    private int alertQueueLimit;
+
+    @Value("${websocket.outbound.location-queue-limit:16}")
+    private int locationQueueLimit;
+
+    @Value("${websocket.outbound.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    private final ConcurrentMap<Long, ConcurrentMap<String, OutboundSessionDecorator>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 所有会话共享的发送线程池，调用方只入队不做网络写
+     */
+    private ExecutorService sender;
+
+    /**
+     * 发送超时巡检：慢客户端的阻塞发送不依赖下一条消息入队才被发现，超时即关闭会话释放发送线程
+     */
+    private ScheduledExecutorService sendWatchdog;
+
+    @PostConstruct
+    public void init() {
+        AtomicLong seq = new AtomicLong();
+        sender = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "websocket-sender-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        sendWatchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "websocket-send-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(sendTimeLimitMs / 4, 100);
+        sendWatchdog.scheduleWithFixedDelay(this::checkSendTimeouts, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sendWatchdog.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private void checkSendTimeouts() {
+        try {
+            long now = System.currentTimeMillis();
+            sessions.forEach((guardianId, deviceSessions) ->
+                    deviceSessions.forEach((deviceId, session) -> session.checkSendTimeout(now)));
+        } catch (Exception e) {
+            log.warn("发送超时巡检异常: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 注册会话，返回带出站缓冲的包装会话，之后的发送都应通过它进行
+     */
+    public OutboundSessionDecorator addSession(Long guardianId, String deviceId, WebSocketSession session) {
+        OutboundSessionDecorator decorated = new OutboundSessionDecorator(
+                session, sender, alertQueueLimit, locationQueueLimit, sendTimeLimitMs);
         sessions.computeIfAbsent(guardianId, k -> new ConcurrentHashMap<>())
                 .compute(deviceId, (k, oldSession) -> {
                     if (oldSession != null && oldSession.isOpen()) {
@@ -25,53 +96,115 @@ public class WebSocketSessionManager {
                             // Ignore close exception
                         }
                     }
-                    return session;
+                    return decorated;
                 });
+        return decorated;
     }
 
     public void removeSession(Long guardianId, String deviceId) {
+        removeSession(guardianId, deviceId, null);
+    }
+
+    /**
+     * 仅当映射中仍是该会话时才移除；同一设备重连后，旧连接的关闭回调不会把新会话移除
+     */
+    public void removeSession(Long guardianId, String deviceId, String sessionId) {
         if (guardianId == null || deviceId == null) return;
 
-        ConcurrentMap<String, WebSocketSession> deviceSessions = sessions.get(guardianId);
+        ConcurrentMap<String, OutboundSessionDecorator> deviceSessions = sessions.get(guardianId);
         if (deviceSessions != null) {
-            WebSocketSession session = deviceSessions.remove(deviceId);
-            if (session != null && session.isOpen()) {
+            WebSocketSession session = deviceSessions.get(deviceId);
+            if (session == null || (sessionId != null && !sessionId.equals(session.getId()))
+                    || !deviceSessions.remove(deviceId, session)) {
+                return;
+            }
+            if (session.isOpen()) {
                 try {
                     session.close();
                 } catch (IOException e) {
-                    throw new RuntimeException(e);
+                    // Ignore close exception
                 }
             }
 
-            if (deviceSessions.isEmpty()) {
-                sessions.remove(guardianId);
-            }
-        }
-
-        // Cancel heartbeat task
-        String taskKey = generateTaskKey(guardianId, deviceId);
-        ScheduledFuture<?> task = heartbeatTasks.remove(taskKey);
-        if (task != null) {
-            task.cancel(false);
+            sessions.computeIfPresent(guardianId, (k, v) -> v.isEmpty() ? null : v);
         }
     }
 
-    public List<WebSocketSession> getSessions(Long guardianId) {
+    /**
+     * 监护人当前的会话，直接返回底层集合的只读视图，不做拷贝
+     */
+    public Collection<OutboundSessionDecorator> getSessions(Long guardianId) {
         if (guardianId == null) return Collections.emptyList();
 
-        ConcurrentMap<String, WebSocketSession> deviceSessions = sessions.get(guardianId);
+        ConcurrentMap<String, OutboundSessionDecorator> deviceSessions = sessions.get(guardianId);
         return deviceSessions != null ?
-                new CopyOnWriteArrayList<>(deviceSessions.values()) :
+                Collections.unmodifiableCollection(deviceSessions.values()) :
                 Collections.emptyList();
     }
 
-    public void registerHeartbeatTask(Long guardianId, String deviceId, ScheduledFuture<?> task) {
-        if (guardianId == null || deviceId == null || task == null) return;
-        heartbeatTasks.put(generateTaskKey(guardianId, deviceId), task);
+    /**
+     * 投递给本节点持有的监护人会话：直接遍历会话集合，帧只入队不等待网络写，发送失败由会话自行关闭并触发移除。
+     * location 不为空时为可丢弃的位置帧，二进制子协议的会话由会话自行编码
+     */
+    public int deliver(Long guardianId, TextMessage frame, LocationResponseDTO location) {
+        Collection<OutboundSessionDecorator> guardianSessions = getSessions(guardianId);
+        if (log.isDebugEnabled()) {
+            log.debug("推送消息给监护人: {}, 活跃会话数: {}", guardianId, guardianSessions.size());
+        }
+        int delivered = 0;
+        for (OutboundSessionDecorator session : guardianSessions) {
+            if (!session.isOpen()) {
+                continue;
+            }
+            if (location != null) {
+                session.sendLocation(frame, location);
+            } else {
+                try {
+                    session.sendMessage(frame);
+                } catch (IOException e) {
+                    log.error("警报推送失败: {}", e.getMessage());
+                    continue;
+                }
+            }
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * 投递可丢弃的事件帧（运动状态变化等）：与位置帧共用可丢弃队列，积压时丢最旧的，不会因此断开会话
+     */
+    public int deliverDroppable(Long guardianId, TextMessage frame) {
+        int delivered = 0;
+        for (OutboundSessionDecorator session : getSessions(guardianId)) {
+            if (session.isOpen()) {
+                session.sendDroppable(frame);
+                delivered++;
+            }
+        }
+        return delivered;
     }
 
-    private String generateTaskKey(Long guardianId, String deviceId) {
-        return guardianId + ":" + deviceId;
+    /**
+     * 每个会话的出站队列深度、发送/丢弃计数
+     */
+    public List<Map<String, Object>> getOutboundStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        sessions.forEach((guardianId, deviceSessions) -> deviceSessions.forEach((deviceId, session) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("guardianId", guardianId);
+            item.put("deviceId", deviceId);
+            item.put("sessionId", session.getId());
+            item.put("binary", session.isBinary());
+            item.put("alertQueueDepth", session.getAlertQueueDepth());
+            item.put("locationQueueDepth", session.getLocationQueueDepth());
+            item.put("sent", session.getSentCount());
+            item.put("dropped", session.getDroppedCount());
+            item.put("bytesSent", session.getBytesSent());
+            item.put("sendTimeMs", session.getSendTimeMs());
+            stats.add(item);
+        }));
+        return stats;
     }
 
     public void cleanupAll() {
@@ -87,9 +220,6 @@ public class WebSocketSessionManager {
             });
         });
         sessions.clear();
-
-        heartbeatTasks.values().forEach(task -> task.cancel(false));
-        heartbeatTasks.clear();
     }
 
     // 设备会话映射
@@ -1,7 +1,11 @@
 package com.project.mapapp.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.project.mapapp.model.dto.device.DeviceInfo;
 import com.project.mapapp.model.entity.Device;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
 * @author jjw
@@ -11,6 +15,12 @@ import com.project.mapapp.model.entity.Device;
 */
 public interface DeviceMapper extends BaseMapper<Device> {
 
+    /**
+     * 一次联表查出监护人名下指定申请状态的被监护人设备（设备、被监护人信息、姓名）
+     */
+    List<DeviceInfo> selectWardDevicesByGuardianId(@Param("guardianId") String guardianId,
+                                                   @Param("status") String status);
+
 }
 
 
@@ -2,6 +2,12 @@ package com.project.mapapp.mapper;
 
 import com.project.mapapp.model.entity.LocationData;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
 * @author jjw
@@ -11,6 +17,39 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface LocationDataMapper extends BaseMapper<LocationData> {
 
+    /**
+     * 多行插入位置数据（单条 INSERT ... VALUES (...),(...)）
+     */
+    int insertBatch(@Param("list") List<LocationData> list);
+
+    /**
+     * 一次查询多个设备各自的最新位置
+     */
+    List<LocationData> selectLatestByDeviceIds(@Param("deviceIds") Collection<String> deviceIds);
+
+    /**
+     * 按时间升序逐行读取设备在时间范围内的位置（start/end 为空表示不限）
+     */
+    void streamHistory(@Param("deviceId") String deviceId,
+                       @Param("start") LocalDateTime start,
+                       @Param("end") LocalDateTime end,
+                       ResultHandler<LocationData> handler);
+
+    /**
+     * 按 id 升序取 afterId 之后的一批记录（汇总任务增量读取），只返回第一条入库不足 settleSeconds 的记录之前的行
+     */
+    List<LocationData> selectAfterId(@Param("afterId") long afterId, @Param("limit") int limit,
+                                     @Param("settleSeconds") long settleSeconds);
+
+    /**
+     * 按 (create_time, id) 升序取 (afterTime, afterId) 之后的一页，afterTime 为空表示从头开始
+     */
+    List<LocationData> selectHistoryPage(@Param("deviceId") String deviceId,
+                                         @Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("afterTime") LocalDateTime afterTime,
+                                         @Param("afterId") Long afterId,
+                                         @Param("limit") int limit);
 }
 
 
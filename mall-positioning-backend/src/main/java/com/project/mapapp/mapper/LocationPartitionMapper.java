@@ -0,0 +1,28 @@
+package com.project.mapapp.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * location_data 分区维护（分区名在 LocationPartitionManager 中校验后才会拼进 DDL）
+ */
+public interface LocationPartitionMapper {
+
+    /**
+     * 按分区顺序列出 location_data 的分区名，未分区时返回空
+     */
+    List<String> selectPartitionNames();
+
+    /**
+     * 从 p_future 中拆出一个新分区，存放 lessThan 之前的数据
+     */
+    void addPartition(@Param("name") String name, @Param("lessThan") String lessThan);
+
+    /**
+     * 把分区数据复制到 location_data_archive；上次归档后 DROP 失败时会重复执行，已归档的行按主键忽略
+     */
+    long archivePartition(@Param("name") String name);
+
+    void dropPartition(@Param("name") String name);
+}
@@ -0,0 +1,39 @@
+package com.project.mapapp.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.project.mapapp.model.entity.LocationRollup;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 位置统计汇总
+ */
+public interface LocationRollupMapper extends BaseMapper<LocationRollup> {
+
+    /**
+     * 把一批增量合并进汇总行：计数、距离、围栏时长累加，外包框和最大速度取极值，末点取时间较新的一方
+     */
+    int upsertBatch(@Param("list") Collection<LocationRollup> rollups);
+
+    /**
+     * 设备最近一个小时汇总行（用于恢复上一个点，衔接距离计算）
+     */
+    LocationRollup selectLastHourly(@Param("deviceId") String deviceId);
+
+    int insertWatermarkIfAbsent(@Param("name") String name);
+
+    /**
+     * 读取并锁定水位行，直到事务结束；多个节点同时汇总时后来者等待并读到推进后的水位，不会重复累加
+     */
+    Long selectWatermarkForUpdate(@Param("name") String name);
+
+    int upsertWatermark(@Param("name") String name, @Param("lastId") long lastId);
+
+    List<LocationRollup> selectRollups(@Param("deviceId") String deviceId,
+                                       @Param("granularity") String granularity,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+}
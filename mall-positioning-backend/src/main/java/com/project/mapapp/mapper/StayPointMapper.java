@@ -0,0 +1,15 @@
+package com.project.mapapp.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.project.mapapp.model.entity.StayPoint;
+
+/**
+ * 停留点
+ */
+public interface StayPointMapper extends BaseMapper<StayPoint> {
+
+    /**
+     * 按 (device_id, arrived_at) 写入或更新停留点，只有离开时间不早于已有记录时才覆盖，事件乱序到达时不会回退
+     */
+    int upsert(StayPoint stayPoint);
+}
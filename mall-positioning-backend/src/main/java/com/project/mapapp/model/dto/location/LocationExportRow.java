@@ -0,0 +1,34 @@
+package com.project.mapapp.model.dto.location;
+
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.annotation.write.style.ColumnWidth;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 历史轨迹导出行（Excel 表头）
+ */
+@Data
+public class LocationExportRow {
+
+    @ExcelProperty("设备ID")
+    @ColumnWidth(24)
+    private String deviceId;
+
+    @ExcelProperty("纬度")
+    @ColumnWidth(14)
+    private BigDecimal latitude;
+
+    @ExcelProperty("经度")
+    @ColumnWidth(14)
+    private BigDecimal longitude;
+
+    @ExcelProperty("精度(米)")
+    @ColumnWidth(10)
+    private BigDecimal accuracy;
+
+    @ExcelProperty("时间")
+    @ColumnWidth(20)
+    private String createTime;
+}
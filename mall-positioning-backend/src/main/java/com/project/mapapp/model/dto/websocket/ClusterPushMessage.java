@@ -0,0 +1,45 @@
+package com.project.mapapp.model.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 集群推送消息：一个节点一次发布的一批按监护人寻址的推送
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterPushMessage {
+
+    /**
+     * 发布节点ID，节点收到自己发布的消息时直接忽略
+     */
+    private String node;
+
+    private List<Item> locations;
+
+    private List<Item> alerts;
+
+    /**
+     * 可丢弃的事件（运动状态变化等），接收节点放进会话的可丢弃队列
+     */
+    private List<Item> events;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        /**
+         * 目标监护人
+         */
+        private List<Long> guardianIds;
+
+        /**
+         * 已序列化好的推送内容（JSON），接收节点不再重复序列化
+         */
+        private String payload;
+    }
+}
@@ -0,0 +1,24 @@
+package com.project.mapapp.model.dto.websocket;
+
+import com.project.mapapp.model.enums.MotionState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 运动状态变化推送（WebSocket 消息类型 MOTION）
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MotionMessage {
+    private String deviceId;
+    private MotionState state;
+    private BigDecimal longitude;
+    private BigDecimal latitude;
+    private double speedMps;
+    private double headingDegrees;
+    private String changedAt;
+}
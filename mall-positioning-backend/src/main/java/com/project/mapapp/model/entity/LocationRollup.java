@@ -0,0 +1,74 @@
+package com.project.mapapp.model.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 位置统计汇总（每设备每小时 / 每天一行）
+ */
+@TableName(value = "location_rollup")
+@Data
+public class LocationRollup {
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+
+    @TableField("device_id")
+    private String deviceId;
+
+    /**
+     * HOUR / DAY
+     */
+    private String granularity;
+
+    @TableField("bucket_start")
+    private LocalDateTime bucketStart;
+
+    @TableField("point_count")
+    private Integer pointCount;
+
+    @TableField("min_lat")
+    private Double minLat;
+
+    @TableField("max_lat")
+    private Double maxLat;
+
+    @TableField("min_lon")
+    private Double minLon;
+
+    @TableField("max_lon")
+    private Double maxLon;
+
+    /**
+     * 移动距离（米）
+     */
+    @TableField("distance_meters")
+    private Double distanceMeters;
+
+    /**
+     * 最大速度（米/秒）
+     */
+    @TableField("max_speed_mps")
+    private Double maxSpeedMps;
+
+    /**
+     * 在设备围栏内的时长（秒）
+     */
+    @TableField("fence_seconds")
+    private Long fenceSeconds;
+
+    @TableField("first_time")
+    private LocalDateTime firstTime;
+
+    @TableField("last_time")
+    private LocalDateTime lastTime;
+
+    @TableField("last_lat")
+    private Double lastLat;
+
+    @TableField("last_lon")
+    private Double lastLon;
+}
@@ -0,0 +1,55 @@
+package com.project.mapapp.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 停留点
+ */
+@TableName(value = "stay_point")
+@Data
+public class StayPoint {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 设备ID
+     */
+    private String device_id;
+
+    /**
+     * 停留期间各点的平均位置
+     */
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+
+    /**
+     * 到达时间（停留内第一个点的定位时间）
+     */
+    private LocalDateTime arrived_at;
+
+    /**
+     * 离开时间（停留内最后一个点的定位时间），停留进行中时随巡检更新
+     */
+    private LocalDateTime left_at;
+
+    /**
+     * 停留时长（秒）
+     */
+    private Long duration_seconds;
+
+    /**
+     * 停留内的点数
+     */
+    private Integer point_count;
+
+    /**
+     * 记录时间
+     */
+    private LocalDateTime create_time;
+}
@@ -4,7 +4,8 @@ public enum AlertType {
     GEO_FENCE("GEO_FENCE", "围栏报警"),
     DEVICE_OFFLINE("DEVICE_OFFLINE", "设备离线"),
     BATTERY_LOW("BATTERY_LOW", "低电量"),
-    SOS("SOS", "紧急求助");
+    SOS("SOS", "紧急求助"),
+    DWELL("DWELL", "长时间停留");
 
     private final String code;
     private final String text;
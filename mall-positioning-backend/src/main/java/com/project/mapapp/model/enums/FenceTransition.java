@@ -0,0 +1,21 @@
+package com.project.mapapp.model.enums;
+
+/**
+ * 围栏状态变化事件
+ */
+public enum FenceTransition {
+    ENTER("ENTER", "进入围栏"),
+    EXIT("EXIT", "离开围栏");
+
+    private final String code;
+    private final String text;
+
+    FenceTransition(String code, String text) {
+        this.code = code;
+        this.text = text;
+    }
+
+    // Getters
+    public String getCode() { return code; }
+    public String getText() { return text; }
+}
@@ -0,0 +1,55 @@
+package com.project.mapapp.model.enums;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 历史轨迹导出格式
+ */
+public enum LocationExportFormat {
+
+    JSON("json", "application/json;charset=UTF-8", "json"),
+    CSV("csv", "text/csv;charset=UTF-8", "csv"),
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+    private final String value;
+
+    private final String contentType;
+
+    private final String extension;
+
+    LocationExportFormat(String value, String contentType, String extension) {
+        this.value = value;
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * 根据 value 获取枚举（忽略大小写）
+     *
+     * @param value
+     * @return
+     */
+    public static LocationExportFormat getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (LocationExportFormat anEnum : LocationExportFormat.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,21 @@
+package com.project.mapapp.model.enums;
+
+/**
+ * 设备运动状态
+ */
+public enum MotionState {
+    MOVING("MOVING", "移动中"),
+    STATIONARY("STATIONARY", "静止");
+
+    private final String code;
+    private final String text;
+
+    MotionState(String code, String text) {
+        this.code = code;
+        this.text = text;
+    }
+
+    // Getters
+    public String getCode() { return code; }
+    public String getText() { return text; }
+}
@@ -0,0 +1,32 @@
+package com.project.mapapp.model.vo;
+
+import lombok.Data;
+
+/**
+ * 紧凑格式的历史轨迹，编码规则见 PolylineCodec
+ */
+@Data
+public class CompactTrackVO {
+
+    private String deviceId;
+
+    /**
+     * 点数
+     */
+    private int count;
+
+    /**
+     * 坐标精度（小数位数）
+     */
+    private int precision;
+
+    /**
+     * 编码后的坐标串（纬度在前）
+     */
+    private String polyline;
+
+    /**
+     * 首个元素为首点的毫秒时间戳，其余为与前一个点的毫秒差
+     */
+    private long[] timestamps;
+}
@@ -0,0 +1,19 @@
+package com.project.mapapp.model.vo;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 监护人全部设备的最新位置快照
+ */
+@Data
+public class LatestLocationSnapshotVO {
+    /**
+     * 快照版本，任一设备位置变化时改变，同时作为 ETag 返回
+     */
+    private String version;
+
+    private List<LocationResponseDTO> locations;
+}
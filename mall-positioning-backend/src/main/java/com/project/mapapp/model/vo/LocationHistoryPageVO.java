@@ -0,0 +1,22 @@
+package com.project.mapapp.model.vo;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 历史轨迹分页（按 create_time, id 续页）
+ */
+@Data
+public class LocationHistoryPageVO {
+
+    private List<LocationResponseDTO> records;
+
+    /**
+     * 下一页的续页令牌，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,42 @@
+package com.project.mapapp.model.vo;
+
+import com.project.mapapp.model.enums.MotionState;
+import lombok.Data;
+
+/**
+ * 设备实时轨迹统计
+ */
+@Data
+public class TrajectoryStatsVO {
+
+    private String deviceId;
+
+    /**
+     * 自服务启动或统计重置以来的累计移动距离（米）
+     */
+    private double distanceMeters;
+
+    /**
+     * 平滑后的速度（米/秒）
+     */
+    private double speedMps;
+
+    /**
+     * 最近一次移动的方向（度，正北为 0，顺时针）
+     */
+    private double headingDegrees;
+
+    private MotionState state;
+
+    /**
+     * 距最近一次移动的秒数
+     */
+    private long stillSeconds;
+
+    /**
+     * 最近一个点的时间（毫秒时间戳）
+     */
+    private long updatedAt;
+
+    private long points;
+}
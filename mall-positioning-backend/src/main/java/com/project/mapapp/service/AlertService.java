@@ -18,6 +18,11 @@ public interface AlertService extends IService<Alert> {
      */
     boolean hasPendingAlert(Long fenceId, String deviceId);
 
+    /**
+     * 检查设备是否存在某类型的未解决警报（不区分围栏）
+     */
+    boolean hasPendingAlert(String deviceId, AlertType type);
+
     /**
      * 标记警报为已解决
      */
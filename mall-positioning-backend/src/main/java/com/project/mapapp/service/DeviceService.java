@@ -1,11 +1,13 @@
 package com.project.mapapp.service;
 
 import com.project.mapapp.model.dto.device.DeviceBindRequest;
+import com.project.mapapp.model.dto.device.DeviceInfo;
 import com.project.mapapp.model.dto.device.DeviceUpdateRequest;
 import com.project.mapapp.model.entity.Device;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import javax.validation.constraints.NotBlank;
+import java.util.List;
 
 /**
 * @author jjw
@@ -23,4 +25,9 @@ public interface DeviceService extends IService<Device> {
     boolean validateDevice(String wardDeviceId);
 
     boolean validateDeviceOwnership(@NotBlank String userId, @NotBlank String deviceId);
+
+    /**
+     * 获取监护人已绑定成功的全部被监护人设备（带缓存）
+     */
+    List<DeviceInfo> listWardDevices(String guardianId);
 }
@@ -27,5 +27,15 @@ public interface GeoFenceService extends IService<GeoFence> {
 
     void checkLocation(LocationResponseDTO location);
 
+    /**
+     * 查找包含该点的全部围栏（设备围栏和共享围栏），基于全局空间索引
+     */
+    List<GeoFence> fencesContaining(double latitude, double longitude);
+
+    /**
+     * 按时间顺序校验同一设备的一组位置（批量上报时使用）
+     */
+    void checkLocations(List<LocationResponseDTO> locations);
+
 
 }
@@ -1,7 +1,12 @@
 package com.project.mapapp.service;
 
+import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
 import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.vo.CompactTrackVO;
+import com.project.mapapp.model.vo.LatestLocationSnapshotVO;
+import com.project.mapapp.model.vo.LocationHistoryPageVO;
+import com.project.mapapp.model.vo.TrajectoryStatsVO;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import java.math.BigDecimal;
@@ -22,7 +27,47 @@ public interface LocationDataService extends IService<LocationData> {
             Long guardianId
             );
 
+    /**
+     * 批量处理同一设备的位置上报（离线缓存补传）
+     *
+     * @return 实际写入的记录数
+     */
+    int processLocationBatch(String deviceId, Long guardianId, List<LocationReportDTO> points);
+
     LocationResponseDTO getLatestLocation(String deviceId, Long guardianId);
 
+    /**
+     * 一次获取多个设备的最新位置快照（带版本号）
+     */
+    LatestLocationSnapshotVO getLatestLocations(List<String> deviceIds);
+
     List<LocationData> queryHistory(String deviceId, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * 流式读取历史轨迹并抽稀
+     *
+     * @param toleranceMeters Douglas–Peucker 容差（米），为空或 0 不做
+     * @param maxPoints       最多返回的点数（按时间分桶），为空不限
+     */
+    List<LocationResponseDTO> queryHistoryTrack(String deviceId, LocalDateTime start, LocalDateTime end,
+                                                Double toleranceMeters, Integer maxPoints);
+
+    /**
+     * 紧凑格式的历史轨迹（坐标为 Encoded Polyline，时间戳为差分数组），抽稀参数同 queryHistoryTrack
+     */
+    CompactTrackVO queryHistoryCompact(String deviceId, LocalDateTime start, LocalDateTime end,
+                                       Double toleranceMeters, Integer maxPoints);
+
+    /**
+     * 设备实时轨迹统计（累计距离、速度、方向、静止时长）
+     */
+    TrajectoryStatsVO getTrajectoryStats(String deviceId);
+
+    /**
+     * 历史轨迹续页分页
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    LocationHistoryPageVO queryHistoryPage(String deviceId, LocalDateTime start, LocalDateTime end,
+                                           String cursor, int pageSize);
 }
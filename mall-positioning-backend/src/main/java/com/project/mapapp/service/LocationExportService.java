@@ -0,0 +1,23 @@
+package com.project.mapapp.service;
+
+import com.project.mapapp.model.enums.LocationExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+/**
+ * 历史轨迹导出
+ */
+public interface LocationExportService {
+
+    /**
+     * 按时间升序把设备的历史位置逐行写入输出流，内存占用与时间范围无关
+     *
+     * @param start 为空表示不限
+     * @param end   为空表示不限
+     * @return 导出的行数
+     */
+    long exportHistory(String deviceId, LocalDateTime start, LocalDateTime end,
+                       LocationExportFormat format, OutputStream out) throws IOException;
+}
@@ -0,0 +1,26 @@
+package com.project.mapapp.service;
+
+import com.project.mapapp.model.entity.LocationRollup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 位置统计汇总（按小时 / 按天）
+ */
+public interface LocationRollupService {
+
+    /**
+     * 从水位开始处理下一批原始位置并合并进汇总表，水位与汇总在同一事务中推进
+     *
+     * @return 本批处理的行数
+     */
+    int rollupNextBatch();
+
+    /**
+     * 查询设备的汇总行
+     *
+     * @param granularity LocationRollup.HOUR / LocationRollup.DAY
+     */
+    List<LocationRollup> listRollups(String deviceId, String granularity, LocalDateTime start, LocalDateTime end);
+}
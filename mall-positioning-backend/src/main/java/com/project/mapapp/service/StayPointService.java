@@ -0,0 +1,22 @@
+package com.project.mapapp.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.entity.StayPoint;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 停留点识别与长时间停留报警
+ */
+public interface StayPointService extends IService<StayPoint> {
+
+    /**
+     * 按时间顺序处理设备的一组新位置：停留开始、进行和结束时写入停留点，停留超过报警时长时产生 DWELL 警报；
+     * 定位时间早于 location.stay.live-window-seconds 的补传点忽略
+     */
+    void observe(String deviceId, List<LocationData> locations);
+
+    List<StayPoint> listStayPoints(String deviceId, LocalDateTime start, LocalDateTime end);
+}
@@ -2,16 +2,19 @@ package com.project.mapapp.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.mapapp.manager.ClusterPushRelay;
 import com.project.mapapp.manager.WebSocketSessionManager;
 import com.project.mapapp.model.dto.alert.AlertMessage;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.dto.websocket.MotionMessage;
 import com.project.mapapp.model.dto.websocket.WebSocketMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.TextMessage;
 
-import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 
 @Slf4j
 @Service
@@ -19,57 +22,73 @@ import java.io.IOException;
 public class WebSocketService {
     private final WebSocketSessionManager sessionManager;
     private final ObjectMapper objectMapper;
+    private final ClusterPushRelay clusterPushRelay;
 
     public void notifyGuardian(Long guardianId, LocationResponseDTO location) {
-        // 增强日志
-        log.info("准备推送消息给监护人: {}, 活跃会话数: {}",
-                guardianId,
-                sessionManager.getSessions(guardianId).size());
+        notifyGuardians(Collections.singletonList(guardianId), location);
+    }
 
-        String message;
-        try {
-            message = objectMapper.writeValueAsString(location);
-            log.debug("序列化消息: {}", message); // 调试日志
-        } catch (JsonProcessingException e) {
-            log.error("序列化失败", e);
+    /**
+     * 推送位置给多个监护人：只序列化一次，所有会话共享同一个不可变帧；
+     * 开启集群推送时同时交给其他节点投递给它们持有的会话
+     */
+    public void notifyGuardians(Collection<Long> guardianIds, LocationResponseDTO location) {
+        TextMessage frame = encode(location);
+        if (frame == null) {
             return;
         }
-
-        sessionManager.getSessions(guardianId).forEach(session -> {
-            try {
-                if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(message));
-                    log.debug("消息已发送到会话: {}", session.getId());
-                } else {
-                    log.warn("会话已关闭: {}", session.getId());
-                }
-            } catch (IOException e) {
-                log.error("发送失败，移除会话: {}", session.getId(), e);
-                sessionManager.removeSession(guardianId, location.getDeviceId());
-            }
-        });
+        for (Long guardianId : guardianIds) {
+            sessionManager.deliver(guardianId, frame, location);
+        }
+        clusterPushRelay.publishLocation(guardianIds, frame.getPayload());
     }
 
     // 新增警报推送方法
     public void pushAlert(Long guardianId, AlertMessage alert) {
-        try {
-            WebSocketMessage<AlertMessage> message = new WebSocketMessage<>(
-                    "ALERT",
-                    alert
-            );
-            String jsonMessage = objectMapper.writeValueAsString(message);
+        pushAlert(Collections.singletonList(guardianId), alert);
+    }
+
+    /**
+     * 推送警报给多个监护人，警报帧不会被丢弃
+     */
+    public void pushAlert(Collection<Long> guardianIds, AlertMessage alert) {
+        pushEvent(guardianIds, new WebSocketMessage<>("ALERT", alert));
+    }
+
+    /**
+     * 推送运动状态变化（开始静止 / 恢复移动）：与位置帧共用可丢弃队列，设备频繁切换状态时只会丢旧帧，不会把会话挤断
+     */
+    public void pushMotion(Collection<Long> guardianIds, MotionMessage motion) {
+        TextMessage frame = encode(new WebSocketMessage<>("MOTION", motion));
+        if (frame == null) {
+            return;
+        }
+        for (Long guardianId : guardianIds) {
+            sessionManager.deliverDroppable(guardianId, frame);
+        }
+        clusterPushRelay.publishEvent(guardianIds, frame.getPayload());
+    }
+
+    /**
+     * 走不丢弃的出站队列，积压超限时断开会话
+     */
+    private void pushEvent(Collection<Long> guardianIds, WebSocketMessage<?> message) {
+        TextMessage frame = encode(message);
+        if (frame == null) {
+            return;
+        }
+        for (Long guardianId : guardianIds) {
+            sessionManager.deliver(guardianId, frame, null);
+        }
+        clusterPushRelay.publishAlert(guardianIds, frame.getPayload());
+    }
 
-            sessionManager.getSessions(guardianId).forEach(session -> {
-                try {
-                    if (session.isOpen()) {
-                        session.sendMessage(new TextMessage(jsonMessage));
-                    }
-                } catch (IOException e) {
-                    log.error("警报推送失败: {}", e.getMessage());
-                }
-            });
+    private TextMessage encode(Object payload) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(payload));
         } catch (JsonProcessingException e) {
-            log.error("序列化警报消息失败: {}", e.getMessage());
+            log.error("序列化推送消息失败: {}", e.getMessage());
+            return null;
         }
     }
-}
\ No newline at end of file
+}
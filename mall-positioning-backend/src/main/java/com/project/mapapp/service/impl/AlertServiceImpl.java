@@ -31,6 +31,16 @@ public class AlertServiceImpl extends ServiceImpl<AlertMapper, Alert> implements
         return this.getOne(query) != null;
     }
 
+    @Override
+    public boolean hasPendingAlert(String deviceId, AlertType type) {
+        QueryWrapper<Alert> query = new QueryWrapper<>();
+        query.eq("device_id", deviceId)
+                .eq("type", type.name())
+                .eq("status", "PENDING")
+                .last("LIMIT 1");
+        return this.getOne(query) != null;
+    }
+
     @Override
     public boolean resolveAlert(Long alertId) {
         Alert alert = new Alert();
@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.manager.GuardianWardCache;
 import com.project.mapapp.mapper.NotificationMapper;
 import com.project.mapapp.mapper.UserMapper;
 import com.project.mapapp.mapper.WardMapper;
@@ -42,6 +44,10 @@ public class ApplicationServiceImpl extends ServiceImpl<ApplicationMapper, Appli
     private WardMapper wardMapper;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private GuardianWardCache guardianWardCache;
+    @Autowired
+    private DeviceGuardianResolver deviceGuardianResolver;
 
     @Override
     public Application submitApplication(String guardianId, String wardDeviceId) {
@@ -99,6 +105,8 @@ public class ApplicationServiceImpl extends ServiceImpl<ApplicationMapper, Appli
         ward.setUserId(Long.valueOf(application.getGuardian_id()));
         ward.setId(wardId); // 这里设置正确的id值
         int count1 = wardMapper.updateById(ward);
+        guardianWardCache.invalidate(application.getGuardian_id());
+        deviceGuardianResolver.invalidateDevice(wardDeviceId);
         return count + count1 == 2;
     }
 
@@ -9,7 +9,10 @@ import com.google.gson.Gson;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.exception.BusinessException;
 import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.manager.GuardianWardCache;
 import com.project.mapapp.model.dto.device.DeviceBindRequest;
+import com.project.mapapp.model.dto.device.DeviceInfo;
 import com.project.mapapp.model.dto.device.DeviceUpdateRequest;
 import com.project.mapapp.model.entity.Device;
 import com.project.mapapp.service.DeviceService;
@@ -20,6 +23,7 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -38,6 +42,12 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private GuardianWardCache guardianWardCache;
+
+    @Resource
+    private DeviceGuardianResolver deviceGuardianResolver;
+
     @Override
     public Boolean bindDevice(String deviceId, Long userId, String email) {
         ThrowUtils.throwIf(deviceId == null||userId==null, ErrorCode.PARAMS_ERROR);
@@ -60,7 +70,10 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
         device.setName(redisDeviceInfo.getDeviceName());
         device.setUser_id(userId);
         device.setStatus(1); // 已绑定
-        return deviceMapper.insert(device) > 0;
+        boolean inserted = deviceMapper.insert(device) > 0;
+        deviceGuardianResolver.invalidateWard(userId);
+        deviceGuardianResolver.invalidateDevice(deviceId);
+        return inserted;
     }
 
     private void deleteVerificationCode(String email) {
@@ -112,6 +125,7 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
 
             // 返回更新结果
             if (updateCount > 0) {
+                guardianWardCache.invalidateAll();
                 log.info("设备 ID: {} 更新成功", deviceId);
                 return true;
             } else {
@@ -140,6 +154,12 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
         return l != null && l > 0;
     }
 
+    @Override
+    public List<DeviceInfo> listWardDevices(String guardianId) {
+        ThrowUtils.throwIf(StrUtil.isBlank(guardianId), ErrorCode.PARAMS_ERROR);
+        return guardianWardCache.getWardDevices(guardianId);
+    }
+
 
 }
 
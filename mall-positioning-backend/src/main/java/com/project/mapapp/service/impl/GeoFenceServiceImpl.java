@@ -1,12 +1,15 @@
 package com.project.mapapp.service.impl;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.TypeReference;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.exception.BusinessException;
 import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.manager.GeoFenceCache;
+import com.project.mapapp.manager.GeoFenceSpatialIndex;
+import com.project.mapapp.manager.GeoFenceStateTracker;
 import com.project.mapapp.mapper.DeviceMapper;
 import com.project.mapapp.mapper.LocationDataMapper;
 import com.project.mapapp.model.dto.alert.AlertMessage;
@@ -18,21 +21,28 @@ import com.project.mapapp.model.entity.GeoFence;
 import com.project.mapapp.mapper.GeoFenceMapper;
 import com.project.mapapp.model.entity.LocationData;
 import com.project.mapapp.model.enums.AlertType;
+import com.project.mapapp.model.enums.FenceTransition;
 import com.project.mapapp.service.AlertService;
 import com.project.mapapp.service.DeviceService;
 import com.project.mapapp.service.GeoFenceService;
 import com.project.mapapp.service.WebSocketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.project.mapapp.utils.GeoUtils;
 import org.locationtech.jts.geom.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -47,6 +57,16 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
     private final GeometryFactory geometryFactory = new GeometryFactory();
     private final LocationDataMapper locationDataMapper;
     private final DeviceMapper deviceMapper;
+    private final GeoFenceCache geoFenceCache;
+    private final GeoFenceStateTracker stateTracker;
+    private final GeoFenceSpatialIndex spatialIndex;
+    private final DeviceGuardianResolver deviceGuardianResolver;
+
+    @Value("${geofence.hysteresis.rebuild-points:10}")
+    private int rebuildPoints;
+
+    @Value("${geofence.hysteresis.rebuild-lookback-hours:24}")
+    private long rebuildLookbackHours;
 
     @Override
     public Boolean createGeoFence(GeoFenceCreateRequest request) {
@@ -63,7 +83,10 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
         fence.setCoordinates(JSON.toJSONString(request.getCoordinates()));
 
         // 保存到数据库
-        return this.save(fence);
+        boolean saved = this.save(fence);
+        geoFenceCache.invalidate(fence.getDevice_id());
+        spatialIndex.upsert(fence);
+        return saved;
     }
 
     @Override
@@ -93,7 +116,11 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
         ThrowUtils.throwIf(fence == null, ErrorCode.NOT_FOUND_ERROR, "围栏不存在");
 
         // 执行删除
-        return this.removeById(fenceId);
+        boolean removed = this.removeById(fenceId);
+        geoFenceCache.invalidate(fence.getDevice_id());
+        stateTracker.resetFence(fence.getDevice_id(), fenceId);
+        spatialIndex.remove(fenceId);
+        return removed;
     }
 
     @Override
@@ -113,6 +140,7 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
 
         // 更新字段
         boolean needUpdate = false;
+        boolean geometryChanged = false;
         if (updateRequest.getName() != null && !updateRequest.getName().equals(existingFence.getName())) {
             existingFence.setName(updateRequest.getName());
             needUpdate = true;
@@ -122,68 +150,138 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
             if (!newCoordinates.equals(existingFence.getCoordinates())) {
                 existingFence.setCoordinates(newCoordinates);
                 needUpdate = true;
+                geometryChanged = true;
             }
         }
 
         // 执行更新
-        return !needUpdate || this.updateById(existingFence);
+        if (!needUpdate) {
+            return true;
+        }
+        boolean updated = this.updateById(existingFence);
+        geoFenceCache.invalidate(existingFence.getDevice_id());
+        if (geometryChanged) {
+            stateTracker.resetFence(existingFence.getDevice_id(), existingFence.getId());
+        }
+        spatialIndex.upsert(existingFence);
+        return updated;
+    }
+
+    @Override
+    public List<GeoFence> fencesContaining(double latitude, double longitude) {
+        return spatialIndex.fencesContaining(latitude, longitude);
     }
 
     @Override
     public void checkLocation(LocationResponseDTO location) {
-        List<GeoFence> fences = geoFenceMapper.selectByDeviceId(location.getDeviceId());
-        if (CollectionUtils.isEmpty(fences)) return;
+        checkLocations(Collections.singletonList(location));
+    }
 
-        try {
-            Coordinate coord = new Coordinate(
-                    location.getLongitude().doubleValue(),
-                    location.getLatitude().doubleValue()
-            );
-            Point point = geometryFactory.createPoint(coord);
+    /**
+     * 按顺序校验一组位置：设备自己的围栏全部判断，共享围栏（商场楼层、出口等）经空间索引只判断点附近的和设备当前所在的
+     */
+    @Override
+    public void checkLocations(List<LocationResponseDTO> locations) {
+        if (CollectionUtils.isEmpty(locations)) return;
+        List<GeoFenceCache.PreparedFence> fences = geoFenceCache.getFences(locations.get(0).getDeviceId());
+        if (fences.isEmpty() && spatialIndex.size() == 0) return;
 
-            for (GeoFence fence : fences) {
-                Polygon polygon = parseCoordinates((String) fence.getCoordinates());
-                if (!polygon.contains(point)) {
-                    handleFenceBreach(fence, location);
-                }
+        try {
+            for (LocationResponseDTO location : locations) {
+                evaluate(fences, location, true);
             }
         } catch (Exception e) {
             log.error("地理围栏校验失败", e);
         }
     }
 
-    private Polygon parseCoordinates(String coordinatesJson) {
+    /**
+     * 启动时用最近的位置记录重建围栏状态（只恢复状态，不产生报警）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFenceStates() {
         try {
-            List<List<Double>> coordinates = JSON.parseObject(
-                    coordinatesJson,
-                    new TypeReference<List<List<Double>>>() {}
-            );
+            QueryWrapper<GeoFence> fenceQuery = new QueryWrapper<>();
+            fenceQuery.select("DISTINCT device_id").isNotNull("device_id");
+            List<Object> deviceIds = geoFenceMapper.selectObjs(fenceQuery);
+            LocalDateTime since = LocalDateTime.now().minusHours(rebuildLookbackHours);
+            int rebuilt = 0;
+            for (Object deviceIdObj : deviceIds) {
+                String deviceId = String.valueOf(deviceIdObj);
+                List<GeoFenceCache.PreparedFence> fences = geoFenceCache.getFences(deviceId);
+                if (CollectionUtils.isEmpty(fences) || stateTracker.hasDevice(deviceId)) {
+                    continue;
+                }
+                QueryWrapper<LocationData> queryWrapper = new QueryWrapper<>();
+                queryWrapper.eq("device_id", deviceId)
+                        .ge("create_time", since)
+                        .orderByDesc("create_time")
+                        .last("LIMIT " + rebuildPoints);
+                List<LocationData> recent = locationDataMapper.selectList(queryWrapper);
+                for (int i = recent.size() - 1; i >= 0; i--) {
+                    LocationData data = recent.get(i);
+                    LocationResponseDTO location = new LocationResponseDTO();
+                    location.setDeviceId(deviceId);
+                    location.setLatitude(data.getLatitude());
+                    location.setLongitude(data.getLongitude());
+                    location.setAccuracy(data.getAccuracy());
+                    evaluate(fences, location, false);
+                }
+                rebuilt++;
+            }
+            log.info("围栏状态重建完成 - 设备数: {}", rebuilt);
+        } catch (Exception e) {
+            log.error("围栏状态重建失败", e);
+        }
+    }
 
-            Coordinate[] coords = coordinates.stream()
-                    .map(p -> new Coordinate(p.get(0), p.get(1)))
-                    .toArray(Coordinate[]::new);
+    private void evaluate(List<GeoFenceCache.PreparedFence> fences, LocationResponseDTO location, boolean emit) {
+        Point point = geometryFactory.createPoint(new Coordinate(
+                location.getLongitude().doubleValue(),
+                location.getLatitude().doubleValue()
+        ));
+        double accuracy = location.getAccuracy() != null ? location.getAccuracy().doubleValue() : 0;
+        double marginDegrees = GeoUtils.metersToLonDegrees(stateTracker.marginMeters(accuracy), point.getY());
 
-            // 闭合多边形
-            if (coords.length > 0 && !coords[0].equals(coords[coords.length-1])) {
-                coords = Arrays.copyOf(coords, coords.length + 1);
-                coords[coords.length - 1] = coords[0];
+        for (GeoFenceCache.PreparedFence fence : fences) {
+            observe(fence, location, point, marginDegrees, true, emit);
+        }
+
+        // 共享围栏：点附近的候选，加上设备已在其中、这次可能已经远离的
+        List<GeoFenceCache.PreparedFence> shared = spatialIndex.sharedFencesNear(point.getY(), point.getX(), marginDegrees);
+        Set<Long> sharedIds = new HashSet<>();
+        for (GeoFenceCache.PreparedFence fence : shared) {
+            sharedIds.add(fence.getFence().getId());
+        }
+        for (Long fenceId : stateTracker.engagedFences(location.getDeviceId())) {
+            GeoFenceCache.PreparedFence fence = spatialIndex.get(fenceId);
+            if (fence != null && fence.getFence().getDevice_id() == null && sharedIds.add(fenceId)) {
+                shared.add(fence);
             }
+        }
+        for (GeoFenceCache.PreparedFence fence : shared) {
+            observe(fence, location, point, marginDegrees, false, emit);
+        }
+    }
 
-            return geometryFactory.createPolygon(coords);
-        } catch (Exception e) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "围栏坐标格式错误");
+    private void observe(GeoFenceCache.PreparedFence fence, LocationResponseDTO location, Point point,
+                         double marginDegrees, boolean exitFromUnknown, boolean emit) {
+        boolean inside = fence.getPrepared().contains(point);
+        FenceTransition transition = stateTracker.observe(location.getDeviceId(), fence.getFence().getId(), inside,
+                () -> fence.getPolygon().getExteriorRing().isWithinDistance(point, marginDegrees), exitFromUnknown);
+        if (transition == null || !emit) {
+            return;
+        }
+        if (transition == FenceTransition.EXIT) {
+            handleFenceBreach(fence.getFence(), location);
+        } else {
+            handleFenceReturn(fence.getFence(), location);
         }
     }
 
     private void handleFenceBreach(GeoFence fence, LocationResponseDTO location) {
         try {
-            // 1. 检查是否存在未解决的相同警报
-            if (alertService.hasPendingAlert(fence.getId(), location.getDeviceId())) {
-                return;
-            }
-
-
-            // 3. 创建新警报记录
+            // 1. 创建新警报记录（状态机只在离开围栏时触发一次，无需再查重）
             Alert alert = new Alert();
             alert.setDevice_id(location.getDeviceId());
             alert.setFence_id(fence.getId());
@@ -193,32 +291,30 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
             alert.setLongitude(location.getLongitude());
 
 
-            // 4. 保存警报（在事务中）
+            // 2. 保存警报（在事务中）
             alertService.save(alert);
 
-            // 5. 获取监护人ID
-            Long guardianId = getGuardianId(location.getDeviceId());
-            if (guardianId == null) {
+            // 3. 获取监护人ID（一个设备可能有多个监护人）
+            List<Long> guardianIds = deviceGuardianResolver.resolveApprovedGuardianIds(location.getDeviceId());
+            if (guardianIds.isEmpty()) {
                 log.warn("未找到设备关联的监护人: {}", location.getDeviceId());
                 return;
             }
 
             String deviceName = deviceMapper.selectById(location.getDeviceId()).getName();
 
-            // 6. 发送WebSocket通知
-            webSocketService.pushAlert(
-                    guardianId,
-                    new AlertMessage(
-                            AlertType.GEO_FENCE,
-                            "围栏报警",
-                            String.format("%s越出%s围栏",
-                                    deviceName,
-                                    fence.getName()),
-                            location.getLongitude(),
-                            location.getLatitude(),
-                            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-                    )
+            // 4. 发送WebSocket通知
+            AlertMessage alertMessage = new AlertMessage(
+                    AlertType.GEO_FENCE,
+                    "围栏报警",
+                    String.format("%s越出%s围栏",
+                            deviceName,
+                            fence.getName()),
+                    location.getLongitude(),
+                    location.getLatitude(),
+                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
             );
+            webSocketService.pushAlert(guardianIds, alertMessage);
         } catch (Exception e) {
             log.error("处理围栏越界异常: deviceId={}, fenceId={}",
                     location.getDeviceId(), fence.getId(), e);
@@ -226,14 +322,27 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
         }
     }
 
-    private Long getGuardianId(String deviceId) {
-        QueryWrapper<LocationData> queryWrapper = new QueryWrapper<>();
-        queryWrapper.select("guardian_id")
-                .eq("device_id", deviceId)
-                .orderByDesc("create_time")
-                .last("LIMIT 1");
-
-        LocationData locationData = locationDataMapper.selectOne(queryWrapper);
-        return locationData != null ? locationData.getGuardian_id() : null;
+    private void handleFenceReturn(GeoFence fence, LocationResponseDTO location) {
+        try {
+            List<Long> guardianIds = deviceGuardianResolver.resolveApprovedGuardianIds(location.getDeviceId());
+            if (guardianIds.isEmpty()) {
+                return;
+            }
+            String deviceName = deviceMapper.selectById(location.getDeviceId()).getName();
+            AlertMessage alertMessage = new AlertMessage(
+                    AlertType.GEO_FENCE,
+                    "返回围栏",
+                    String.format("%s回到%s围栏",
+                            deviceName,
+                            fence.getName()),
+                    location.getLongitude(),
+                    location.getLatitude(),
+                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
+            );
+            webSocketService.pushAlert(guardianIds, alertMessage);
+        } catch (Exception e) {
+            log.error("处理返回围栏通知异常: deviceId={}, fenceId={}",
+                    location.getDeviceId(), fence.getId(), e);
+        }
     }
 }
\ No newline at end of file
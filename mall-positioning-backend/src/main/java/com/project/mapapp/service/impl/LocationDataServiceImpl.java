@@ -2,20 +2,57 @@ package com.project.mapapp.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.manager.LatestLocationStore;
+import com.project.mapapp.manager.LocationKalmanFilter;
+import com.project.mapapp.manager.LocationOutlierFilter;
+import com.project.mapapp.manager.LocationPushCoalescer;
+import com.project.mapapp.manager.LocationWriteBehindQueue;
+import com.project.mapapp.manager.TrajectoryStatsEngine;
 import com.project.mapapp.mapper.GeoFenceMapper;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.dto.websocket.MotionMessage;
 import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.enums.MotionState;
+import com.project.mapapp.model.vo.CompactTrackVO;
+import com.project.mapapp.model.vo.LatestLocationSnapshotVO;
+import com.project.mapapp.model.vo.LocationHistoryPageVO;
+import com.project.mapapp.model.vo.TrajectoryStatsVO;
 import com.project.mapapp.service.GeoFenceService;
+import com.project.mapapp.service.StayPointService;
+import com.project.mapapp.service.WebSocketService;
+import com.project.mapapp.utils.PolylineCodec;
+import com.project.mapapp.utils.TrajectorySimplifier;
 import com.project.mapapp.service.LocationDataService;
 import com.project.mapapp.mapper.LocationDataMapper;
-import com.project.mapapp.service.WebSocketService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
 * @author jjw
@@ -26,8 +63,17 @@ import java.util.List;
 public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, LocationData>
     implements LocationDataService {
 
-    @Autowired
-    private WebSocketService webSocketService;
+    /**
+     * 单条 INSERT 语句最多携带的行数，避免超过 max_allowed_packet
+     */
+    private static final int INSERT_CHUNK_SIZE = 500;
+
+    private static final DateTimeFormatter HISTORY_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 未给出完整时间范围时的初始分桶宽度，点数超限后自动翻倍
+     */
+    private static final long DEFAULT_BUCKET_MS = 1000;
 
     @Autowired
     private LocationDataMapper locationDataTestMapper;
@@ -35,11 +81,42 @@ public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, Loc
     @Autowired
     private GeoFenceService geoFenceService;
 
+    @Autowired
+    private LocationWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private LatestLocationStore latestLocationStore;
+
+    @Autowired
+    private DeviceGuardianResolver deviceGuardianResolver;
+
+    @Autowired
+    private LocationPushCoalescer locationPushCoalescer;
+
+    @Autowired
+    private TrajectoryStatsEngine trajectoryStatsEngine;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private StayPointService stayPointService;
+
+    @Autowired
+    private LocationOutlierFilter locationOutlierFilter;
+
+    @Autowired
+    private LocationKalmanFilter locationKalmanFilter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * 处理位置上报
+     * <p>
+     * 异步写入模式下入队即确认，不占用数据库连接；同步模式下落库、推送和围栏校验在同一个事务中执行。
      */
     @Override
-    @Transactional
     public boolean processLocation(
             String deviceId,
             BigDecimal latitude,
@@ -54,30 +131,285 @@ public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, Loc
         location.setLongitude(longitude);
         location.setAccuracy(accuracy);
         location.setGuardian_id(guardianId);
+        location.setCreate_time(LocalDateTime.now());
+
+        // 离群点直接丢弃：不落库、不推送、不做围栏校验和统计。
+        // 过滤在入队之前：队列满返回 503 时该点已进入过滤窗口，客户端重试同一个点时与自身比较（位移为 0）照常通过，
+        // 结果与第一次就入队成功相同；被判为跳点的重试只会多计一次连续拒绝
+        if (!locationOutlierFilter.accept(deviceId, location)) {
+            return true;
+        }
+
+        // 异步写入模式：入队即确认，落库、推送、围栏校验分阶段异步执行
+        if (writeBehindQueue.isEnabled()) {
+            ThrowUtils.throwIf(!writeBehindQueue.offer(location), ErrorCode.SYSTEM_ERROR, "位置写入繁忙，请稍后重试");
+            LocationData shown = smoothLatest(Collections.singletonList(location));
+            rememberLatest(shown);
+            LocationResponseDTO dto = convertToResponseDTO(location);
+            LocationResponseDTO pushed = shown == location ? dto : convertToResponseDTO(shown);
+            trackMotion(deviceId, Collections.singletonList(location));
+            writeBehindQueue.submitPush(() -> notifyGuardians(deviceId, pushed));
+            writeBehindQueue.submitFence(() -> {
+                geoFenceService.checkLocation(dto);
+                stayPointService.observe(deviceId, Collections.singletonList(location));
+            });
+            return true;
+        }
 
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> insertAndDispatch(deviceId, location)));
+    }
+
+    private boolean insertAndDispatch(String deviceId, LocationData location) {
         int insert = locationDataTestMapper.insert(location);
+        LocationData shown = smoothLatest(Collections.singletonList(location));
+        rememberLatest(shown);
+        trackMotion(deviceId, Collections.singletonList(location));
 
-        // 2. 通过WebSocket通知监护人
+        // 2. 通过WebSocket通知监护人（开启平滑时推送平滑位置，围栏仍按原始点校验）
         LocationResponseDTO dto = convertToResponseDTO(location);
-        webSocketService.notifyGuardian(guardianId, dto);
+        notifyGuardians(deviceId, shown == location ? dto : convertToResponseDTO(shown));
         geoFenceService.checkLocation(dto);
+        stayPointService.observe(deviceId, Collections.singletonList(location));
         return insert > 0;
     }
 
     /**
-     * 获取最新位置
+     * 批量处理位置上报：一次多行插入，推送和围栏校验只针对最新的点执行一次；事务只用于同步写入模式
+     */
+    @Override
+    public int processLocationBatch(String deviceId, Long guardianId, List<LocationReportDTO> points) {
+        if (points == null || points.isEmpty()) {
+            return 0;
+        }
+
+        // 1. 构建记录并按定位时间排序（离线缓存的点可能乱序到达）
+        LocalDateTime now = LocalDateTime.now();
+        List<LocationData> locations = new ArrayList<>(points.size());
+        for (LocationReportDTO point : points) {
+            LocationData location = new LocationData();
+            location.setDevice_id(deviceId);
+            location.setLatitude(point.getLatitude());
+            location.setLongitude(point.getLongitude());
+            location.setAccuracy(point.getAccuracy());
+            location.setGuardian_id(guardianId);
+            location.setTimestamp(point.getCreateTime());
+            location.setCreate_time(point.getCreateTime() != null
+                    ? LocalDateTime.ofInstant(point.getCreateTime().toInstant(), ZoneId.systemDefault())
+                    : now);
+            locations.add(location);
+        }
+        locations.sort(Comparator.comparing(LocationData::getCreate_time));
+
+        // 2. 按时间顺序丢弃离群点
+        List<LocationData> plausible = new ArrayList<>(locations.size());
+        for (LocationData location : locations) {
+            if (locationOutlierFilter.accept(deviceId, location)) {
+                plausible.add(location);
+            }
+        }
+        if (plausible.isEmpty()) {
+            return 0;
+        }
+
+        // 3. 异步写入模式：按顺序入队，只对已入队的部分做推送和围栏校验
+        if (writeBehindQueue.isEnabled()) {
+            int accepted = writeBehindQueue.offerAll(plausible);
+            ThrowUtils.throwIf(accepted == 0, ErrorCode.SYSTEM_ERROR, "位置写入繁忙，请稍后重试");
+            List<LocationData> live = plausible.subList(0, accepted);
+            LocationData shown = smoothLatest(live);
+            rememberLatest(shown);
+            trackMotion(deviceId, live);
+            List<LocationResponseDTO> dtos = convertToResponseDTOs(live);
+            LocationResponseDTO latest = convertToResponseDTO(shown);
+            writeBehindQueue.submitPush(() -> notifyGuardians(deviceId, latest));
+            writeBehindQueue.submitFence(() -> {
+                geoFenceService.checkLocations(dtos);
+                stayPointService.observe(deviceId, live);
+            });
+            return accepted;
+        }
+
+        Integer inserted = transactionTemplate.execute(status -> insertBatchAndDispatch(deviceId, plausible));
+        return inserted != null ? inserted : 0;
+    }
+
+    private int insertBatchAndDispatch(String deviceId, List<LocationData> plausible) {
+        // 4. 多行插入
+        int inserted = 0;
+        for (int from = 0; from < plausible.size(); from += INSERT_CHUNK_SIZE) {
+            int to = Math.min(from + INSERT_CHUNK_SIZE, plausible.size());
+            inserted += locationDataTestMapper.insertBatch(plausible.subList(from, to));
+        }
+        LocationData shown = smoothLatest(plausible);
+        rememberLatest(shown);
+        trackMotion(deviceId, plausible);
+
+        // 5. 只推送最新位置；围栏状态机按顺序消费整批点，一次完成校验
+        List<LocationResponseDTO> dtos = convertToResponseDTOs(plausible);
+        notifyGuardians(deviceId, convertToResponseDTO(shown));
+        geoFenceService.checkLocations(dtos);
+        stayPointService.observe(deviceId, plausible);
+        return inserted;
+    }
+
+    /**
+     * 获取最新位置：优先读最新位置存储，冷启动未命中时才查库并回填
+     * 只有申请已通过的监护人（含非主监护人）可以读取，其他用户返回空
      */
     public LocationResponseDTO getLatestLocation(String deviceId, Long guardianId) {
+        if (guardianId == null || !deviceGuardianResolver.resolveApprovedGuardianIds(deviceId).contains(guardianId)) {
+            return null;
+        }
+        LatestLocationStore.LatestFix fix = latestLocationStore.get(deviceId);
+        if (fix != null) {
+            return convertToResponseDTO(deviceId, fix);
+        }
+
         QueryWrapper<LocationData> query = new QueryWrapper<>();
         query.eq("device_id", deviceId)
-                .eq("guardian_id", guardianId)
                 .orderByDesc("create_time")
                 .last("LIMIT 1");
 
         LocationData location = locationDataTestMapper.selectOne(query);
+        if (location != null && location.getCreate_time() != null) {
+            rememberLatest(location);
+        }
         return convertToResponseDTO(location);
     }
 
+    @Override
+    public LatestLocationSnapshotVO getLatestLocations(List<String> deviceIds) {
+        List<String> sortedIds = new ArrayList<>(deviceIds);
+        sortedIds.sort(Comparator.naturalOrder());
+
+        // 1. 最新位置存储（本地 + 一次 Redis pipeline）
+        Map<String, LatestLocationStore.LatestFix> fixes = sortedIds.isEmpty()
+                ? new HashMap<>() : latestLocationStore.getAll(sortedIds);
+
+        // 2. 冷启动未命中的设备用一条分组查询回源并回填
+        List<String> misses = new ArrayList<>();
+        for (String deviceId : sortedIds) {
+            if (!fixes.containsKey(deviceId)) {
+                misses.add(deviceId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (LocationData location : locationDataTestMapper.selectLatestByDeviceIds(misses)) {
+                rememberLatest(location);
+            }
+            fixes.putAll(latestLocationStore.getAll(misses));
+        }
+
+        // 3. 按设备ID顺序组装，版本号由各设备的定位时间计算
+        long version = 1125899906842597L;
+        List<LocationResponseDTO> locations = new ArrayList<>(fixes.size());
+        for (String deviceId : sortedIds) {
+            LatestLocationStore.LatestFix fix = fixes.get(deviceId);
+            if (fix == null) {
+                continue;
+            }
+            version = 31 * version + deviceId.hashCode();
+            version = 31 * version + fix.getTimestamp();
+            locations.add(convertToResponseDTO(deviceId, fix));
+        }
+        LatestLocationSnapshotVO snapshot = new LatestLocationSnapshotVO();
+        snapshot.setVersion(Long.toHexString(version));
+        snapshot.setLocations(locations);
+        return snapshot;
+    }
+
+    /**
+     * 推送给设备已通过申请的全部监护人，经合并限速后发出；还没有通过的申请时不推送
+     */
+    private void notifyGuardians(String deviceId, LocationResponseDTO dto) {
+        List<Long> guardianIds = deviceGuardianResolver.resolveApprovedGuardianIds(deviceId);
+        if (!guardianIds.isEmpty()) {
+            locationPushCoalescer.submit(deviceId, guardianIds, dto);
+        }
+    }
+
+    /**
+     * 按时间顺序更新实时轨迹统计，运动状态变化时推送 MOTION 事件（一批点只推送最后一次变化）
+     */
+    private void trackMotion(String deviceId, List<LocationData> locations) {
+        MotionState changed = null;
+        LocationData changedAt = null;
+        for (LocationData location : locations) {
+            MotionState state = trajectoryStatsEngine.observe(deviceId,
+                    location.getLatitude().doubleValue(),
+                    location.getLongitude().doubleValue(),
+                    location.getCreate_time().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            if (state != null) {
+                changed = state;
+                changedAt = location;
+            }
+        }
+        if (changed == null) {
+            return;
+        }
+        List<Long> guardianIds = deviceGuardianResolver.resolveApprovedGuardianIds(deviceId);
+        if (guardianIds.isEmpty()) {
+            return;
+        }
+        TrajectoryStatsVO stats = trajectoryStatsEngine.snapshot(deviceId);
+        webSocketService.pushMotion(guardianIds,
+                new MotionMessage(deviceId, changed, changedAt.getLongitude(), changedAt.getLatitude(),
+                        stats.getSpeedMps(), stats.getHeadingDegrees(),
+                        changedAt.getCreate_time().format(HISTORY_TIME_FORMATTER)));
+    }
+
+    /**
+     * 开启卡尔曼平滑时按时间顺序把整批点喂给滤波器，返回最后一个点的平滑副本（只用于推送和最新位置）；
+     * 未开启时直接返回最后一个点
+     */
+    private LocationData smoothLatest(List<LocationData> locations) {
+        LocationData last = locations.get(locations.size() - 1);
+        if (!locationKalmanFilter.isEnabled()) {
+            return last;
+        }
+        double[] smoothed = null;
+        for (LocationData location : locations) {
+            smoothed = locationKalmanFilter.smooth(
+                    location.getDevice_id(),
+                    location.getLatitude().doubleValue(),
+                    location.getLongitude().doubleValue(),
+                    location.getAccuracy() != null ? location.getAccuracy().doubleValue() : 0,
+                    location.getCreate_time().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        LocationData shown = new LocationData();
+        BeanUtils.copyProperties(last, shown);
+        shown.setLatitude(BigDecimal.valueOf(smoothed[0]).setScale(8, RoundingMode.HALF_UP));
+        shown.setLongitude(BigDecimal.valueOf(smoothed[1]).setScale(8, RoundingMode.HALF_UP));
+        return shown;
+    }
+
+    /**
+     * 写入最新位置存储；处于事务中时推迟到提交之后，回滚的位置不会出现在各节点的最新位置里
+     */
+    private void rememberLatest(LocationData location) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    updateLatest(location);
+                }
+            });
+            return;
+        }
+        updateLatest(location);
+    }
+
+    private void updateLatest(LocationData location) {
+        latestLocationStore.update(
+                location.getDevice_id(),
+                location.getGuardian_id() != null ? location.getGuardian_id() : 0L,
+                location.getLatitude().doubleValue(),
+                location.getLongitude().doubleValue(),
+                location.getAccuracy() != null ? location.getAccuracy().doubleValue() : 0,
+                location.getCreate_time().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        );
+    }
+
     @Override
     public List<LocationData> queryHistory(String deviceId, LocalDateTime startTime, LocalDateTime endTime) {
         QueryWrapper<LocationData> queryWrapper = new QueryWrapper<>();
@@ -99,6 +431,144 @@ public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, Loc
         return this.list(queryWrapper);
     }
 
+    @Override
+    public List<LocationResponseDTO> queryHistoryTrack(String deviceId, LocalDateTime start, LocalDateTime end,
+                                                       Double toleranceMeters, Integer maxPoints) {
+        List<LocationResponseDTO> dtos = new ArrayList<>();
+        streamTrack(deviceId, start, end, toleranceMeters, maxPoints, location -> dtos.add(toHistoryDTO(location)));
+        return dtos;
+    }
+
+    @Override
+    public CompactTrackVO queryHistoryCompact(String deviceId, LocalDateTime start, LocalDateTime end,
+                                              Double toleranceMeters, Integer maxPoints) {
+        ZoneId zone = ZoneId.systemDefault();
+        PolylineCodec.Encoder encoder = PolylineCodec.newEncoder();
+        streamTrack(deviceId, start, end, toleranceMeters, maxPoints, location -> encoder.add(
+                location.getLatitude().doubleValue(),
+                location.getLongitude().doubleValue(),
+                location.getCreate_time().atZone(zone).toInstant().toEpochMilli()));
+
+        CompactTrackVO track = new CompactTrackVO();
+        track.setDeviceId(deviceId);
+        track.setCount(encoder.size());
+        track.setPrecision(PolylineCodec.PRECISION);
+        track.setPolyline(encoder.polyline());
+        track.setTimestamps(encoder.timestamps());
+        return track;
+    }
+
+    /**
+     * 按时间升序把轨迹点交给 consumer；不抽稀时逐行直接转交，不在内存中保留结果集
+     */
+    private void streamTrack(String deviceId, LocalDateTime start, LocalDateTime end,
+                             Double toleranceMeters, Integer maxPoints, Consumer<LocationData> consumer) {
+        boolean simplify = (toleranceMeters != null && toleranceMeters > 0) || maxPoints != null;
+        if (!simplify) {
+            streamValidHistory(deviceId, start, end, consumer);
+            return;
+        }
+
+        int limit = maxPoints != null ? maxPoints : 0;
+        long initialBucketMs = DEFAULT_BUCKET_MS;
+        if (limit > 0 && start != null && end != null && end.isAfter(start)) {
+            initialBucketMs = Math.max(1, Duration.between(start, end).toMillis() / limit);
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        TrajectorySimplifier<LocationData> simplifier = new TrajectorySimplifier<>(
+                toleranceMeters != null ? toleranceMeters : 0, limit, initialBucketMs,
+                location -> location.getLatitude().doubleValue(),
+                location -> location.getLongitude().doubleValue(),
+                location -> location.getCreate_time().atZone(zone).toInstant().toEpochMilli());
+
+        // SQL 已按时间排序，逐行送入抽稀器，不再整体加载和重新排序
+        streamValidHistory(deviceId, start, end, simplifier::add);
+        simplifier.finish().forEach(consumer);
+    }
+
+    private void streamValidHistory(String deviceId, LocalDateTime start, LocalDateTime end,
+                                    Consumer<LocationData> consumer) {
+        locationDataTestMapper.streamHistory(deviceId, start, end, context -> {
+            LocationData location = context.getResultObject();
+            if (location.getLatitude() != null && location.getLongitude() != null && location.getCreate_time() != null) {
+                consumer.accept(location);
+            }
+        });
+    }
+
+    @Override
+    public TrajectoryStatsVO getTrajectoryStats(String deviceId) {
+        TrajectoryStatsVO stats = trajectoryStatsEngine.snapshot(deviceId);
+        ThrowUtils.throwIf(stats == null, ErrorCode.NOT_FOUND_ERROR, "暂无该设备的实时统计");
+        return stats;
+    }
+
+    @Override
+    public LocationHistoryPageVO queryHistoryPage(String deviceId, LocalDateTime start, LocalDateTime end,
+                                                  String cursor, int pageSize) {
+        LocalDateTime afterTime = null;
+        Long afterId = null;
+        if (StringUtils.isNotBlank(cursor)) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_", 2);
+                afterTime = LocalDateTime.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (Exception e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "无效的分页令牌");
+            }
+        }
+
+        // 多取一条判断是否还有下一页
+        List<LocationData> rows = locationDataTestMapper.selectHistoryPage(deviceId, start, end, afterTime, afterId, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        List<LocationResponseDTO> records = new ArrayList<>(rows.size());
+        for (LocationData location : rows) {
+            records.add(toHistoryDTO(location));
+        }
+        LocationHistoryPageVO page = new LocationHistoryPageVO();
+        page.setRecords(records);
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            LocationData last = rows.get(rows.size() - 1);
+            String token = last.getCreate_time() + "_" + last.getId();
+            page.setNextCursor(Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8)));
+        }
+        return page;
+    }
+
+    private LocationResponseDTO toHistoryDTO(LocationData location) {
+        LocationResponseDTO dto = new LocationResponseDTO();
+        dto.setDeviceId(location.getDevice_id());
+        dto.setLongitude(location.getLongitude());
+        dto.setLatitude(location.getLatitude());
+        dto.setAccuracy(location.getAccuracy());
+        dto.setCreateTime(location.getCreate_time().format(HISTORY_TIME_FORMATTER));
+        return dto;
+    }
+
+    private List<LocationResponseDTO> convertToResponseDTOs(List<LocationData> locations) {
+        List<LocationResponseDTO> dtos = new ArrayList<>(locations.size());
+        for (LocationData location : locations) {
+            dtos.add(convertToResponseDTO(location));
+        }
+        return dtos;
+    }
+
+    private LocationResponseDTO convertToResponseDTO(String deviceId, LatestLocationStore.LatestFix fix) {
+        LocationResponseDTO dto = new LocationResponseDTO();
+        dto.setLatitude(BigDecimal.valueOf(fix.getLatitude()));
+        dto.setLongitude(BigDecimal.valueOf(fix.getLongitude()));
+        dto.setAccuracy(BigDecimal.valueOf(fix.getAccuracy()));
+        dto.setDeviceId(deviceId);
+        dto.setCreateTime(String.valueOf(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(fix.getTimestamp()), ZoneId.systemDefault())));
+        return dto;
+    }
+
     private LocationResponseDTO convertToResponseDTO(LocationData location) {
         if (location == null) return null;
 
@@ -0,0 +1,228 @@
+package com.project.mapapp.service.impl;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.mapapp.mapper.LocationDataMapper;
+import com.project.mapapp.model.dto.location.LocationExportRow;
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.enums.LocationExportFormat;
+import com.project.mapapp.service.LocationExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 历史轨迹导出
+ * <p>
+ * 通过 LocationDataMapper.streamHistory 逐行读取（MySQL 流式结果集），每行直接写给对应格式的输出，
+ * 不在内存中保留结果集；xlsx 由 EasyExcel 以 SXSSF 方式写出，只缓存固定大小的一批行。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LocationExportServiceImpl implements LocationExportService {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * xlsx 每批写入的行数
+     */
+    private static final int EXCEL_BATCH_SIZE = 1000;
+
+    /**
+     * xlsx 单个工作表的最大行数（Excel 上限 1048576，留出表头）
+     */
+    private static final int EXCEL_SHEET_ROWS = 1_000_000;
+
+    private final LocationDataMapper locationDataMapper;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public long exportHistory(String deviceId, LocalDateTime start, LocalDateTime end,
+                              LocationExportFormat format, OutputStream out) throws IOException {
+        RowWriter writer;
+        switch (format) {
+            case JSON:
+                writer = new JsonRowWriter(out);
+                break;
+            case XLSX:
+                writer = new ExcelRowWriter(out);
+                break;
+            case CSV:
+            default:
+                writer = new CsvRowWriter(out);
+                break;
+        }
+
+        long[] count = {0};
+        try {
+            locationDataMapper.streamHistory(deviceId, start, end, context -> {
+                try {
+                    writer.write(context.getResultObject());
+                    count[0]++;
+                } catch (IOException e) {
+                    // 客户端断开等写出失败时中止读取
+                    context.stop();
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        log.info("历史轨迹导出完成 - deviceId: {}, format: {}, rows: {}", deviceId, format.getValue(), count[0]);
+        return count[0];
+    }
+
+    private interface RowWriter {
+        void write(LocationData location) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private final class JsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        private JsonRowWriter(OutputStream out) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+        }
+
+        @Override
+        public void write(LocationData location) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("deviceId", location.getDevice_id());
+            writeNumberField("latitude", location.getLatitude());
+            writeNumberField("longitude", location.getLongitude());
+            writeNumberField("accuracy", location.getAccuracy());
+            generator.writeStringField("createTime", formatTime(location.getCreate_time()));
+            generator.writeEndObject();
+        }
+
+        private void writeNumberField(String name, BigDecimal value) throws IOException {
+            generator.writeFieldName(name);
+            if (value != null) {
+                generator.writeNumber(value);
+            } else {
+                generator.writeNull();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.writeEndArray();
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            // BOM，便于 Excel 直接打开时识别 UTF-8
+            writer.write('\uFEFF');
+            writer.write("deviceId,latitude,longitude,accuracy,createTime\r\n");
+        }
+
+        @Override
+        public void write(LocationData location) throws IOException {
+            writer.write(escape(location.getDevice_id()));
+            writer.write(',');
+            writer.write(toPlainString(location.getLatitude()));
+            writer.write(',');
+            writer.write(toPlainString(location.getLongitude()));
+            writer.write(',');
+            writer.write(toPlainString(location.getAccuracy()));
+            writer.write(',');
+            writer.write(formatTime(location.getCreate_time()));
+            writer.write("\r\n");
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        private static String toPlainString(BigDecimal value) {
+            return value != null ? value.toPlainString() : "";
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class ExcelRowWriter implements RowWriter {
+        private final ExcelWriter excelWriter;
+        private final List<LocationExportRow> batch = new ArrayList<>(EXCEL_BATCH_SIZE);
+        private WriteSheet sheet;
+        private int sheetNo;
+        private int sheetRows;
+
+        private ExcelRowWriter(OutputStream out) {
+            excelWriter = EasyExcel.write(out, LocationExportRow.class).autoCloseStream(false).build();
+            nextSheet();
+        }
+
+        private void nextSheet() {
+            sheet = EasyExcel.writerSheet(sheetNo, "轨迹" + (sheetNo + 1)).build();
+            sheetNo++;
+            sheetRows = 0;
+        }
+
+        @Override
+        public void write(LocationData location) {
+            LocationExportRow row = new LocationExportRow();
+            row.setDeviceId(location.getDevice_id());
+            row.setLatitude(location.getLatitude());
+            row.setLongitude(location.getLongitude());
+            row.setAccuracy(location.getAccuracy());
+            row.setCreateTime(formatTime(location.getCreate_time()));
+            batch.add(row);
+            if (batch.size() >= EXCEL_BATCH_SIZE) {
+                flushBatch();
+            }
+        }
+
+        private void flushBatch() {
+            if (sheetRows + batch.size() > EXCEL_SHEET_ROWS) {
+                nextSheet();
+            }
+            excelWriter.write(batch, sheet);
+            sheetRows += batch.size();
+            batch.clear();
+        }
+
+        @Override
+        public void finish() {
+            if (!batch.isEmpty() || sheetRows == 0) {
+                flushBatch();
+            }
+            excelWriter.finish();
+        }
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time != null ? time.format(TIME_FORMATTER) : "";
+    }
+}
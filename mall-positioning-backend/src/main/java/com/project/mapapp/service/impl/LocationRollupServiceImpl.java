@@ -0,0 +1,286 @@
+package com.project.mapapp.service.impl;
+
+import com.project.mapapp.manager.GeoFenceCache;
+import com.project.mapapp.mapper.LocationDataMapper;
+import com.project.mapapp.mapper.LocationRollupMapper;
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.entity.LocationRollup;
+import com.project.mapapp.service.LocationRollupService;
+import com.project.mapapp.utils.GeoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 位置统计汇总
+ * <p>
+ * 按 location_data.id 水位增量读取，水位行在事务内 FOR UPDATE 锁定，每行只处理一次：同一批内先在内存中按 (设备, 粒度, 周期) 聚合，
+ * 再用 INSERT ... ON DUPLICATE KEY UPDATE 合并进汇总表。距离和速度按同一设备相邻两点计算，
+ * 上一个点保存在内存中，首次遇到设备时从它最近的小时汇总行恢复；间隔超过 maxGapSeconds 的两点只计距离，
+ * 不计速度和围栏时长。
+ * <p>
+ * 水位按 id 推进，id 在插入时分配、提交顺序却不确定（写后队列多个线程并发批量插入），更小的 id 可能晚于更大的 id 可见。
+ * 因此每轮只读到第一条入库（insert_time，数据库时钟）不足 settleSeconds 的行之前，settleSeconds 需大于最长的插入事务；
+ * 不能用 create_time 判断：补传和写后队列积压的行 create_time 早已过去，但可能刚刚插入。
+ * create_time 晚于当前时间的行（设备时钟超前）不计入汇总。
+ * <p>
+ * 已知限制：离线缓存后批量补传的点 id 更大但时间早于设备已处理的最后一个点，只计入点数、外包框和首末时间，
+ * 不计距离、速度和围栏时长（没有按时间相邻的点可以配对）。补传前后两个实时点之间的直线距离仍会计入，
+ * 离线期间的实际路程和围栏时长会偏小。需要精确值时按原始轨迹查询（/location/history）。
+ */
+@Slf4j
+@Service
+public class LocationRollupServiceImpl implements LocationRollupService {
+
+    private static final String WATERMARK_NAME = "location_rollup";
+    private static final int UPSERT_CHUNK_SIZE = 500;
+
+    @Value("${location.rollup.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${location.rollup.settle-seconds:30}")
+    private long settleSeconds;
+
+    @Value("${location.rollup.max-gap-seconds:600}")
+    private long maxGapSeconds;
+
+    private final LocationDataMapper locationDataMapper;
+    private final LocationRollupMapper locationRollupMapper;
+    private final GeoFenceCache geoFenceCache;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    /**
+     * 每个设备已处理的最后一个点；水位被其他节点推进过时整体作废
+     */
+    private final Map<String, LastPoint> lastPoints = new HashMap<>();
+    private long lastWrittenWatermark = -1;
+
+    public LocationRollupServiceImpl(LocationDataMapper locationDataMapper, LocationRollupMapper locationRollupMapper,
+                                     GeoFenceCache geoFenceCache) {
+        this.locationDataMapper = locationDataMapper;
+        this.locationRollupMapper = locationRollupMapper;
+        this.geoFenceCache = geoFenceCache;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public synchronized int rollupNextBatch() {
+        try {
+            return doRollup();
+        } catch (RuntimeException e) {
+            // 事务回滚，内存中的上一个点已超前于水位，下次从汇总表重新恢复
+            lastWrittenWatermark = -1;
+            throw e;
+        }
+    }
+
+    private int doRollup() {
+        locationRollupMapper.insertWatermarkIfAbsent(WATERMARK_NAME);
+        Long stored = locationRollupMapper.selectWatermarkForUpdate(WATERMARK_NAME);
+        long watermark = stored != null ? stored : 0;
+        if (watermark != lastWrittenWatermark) {
+            lastPoints.clear();
+        }
+
+        List<LocationData> rows = locationDataMapper.selectAfterId(watermark, batchSize, settleSeconds);
+        ZoneId zone = ZoneId.systemDefault();
+        long now = System.currentTimeMillis();
+        long maxGapMs = maxGapSeconds * 1000;
+        Map<String, Accumulator> buckets = new LinkedHashMap<>();
+        long lastId = watermark;
+        int processed = 0;
+
+        for (LocationData row : rows) {
+            if (row.getCreate_time() == null || row.getLatitude() == null || row.getLongitude() == null) {
+                lastId = row.getId();
+                continue;
+            }
+            long time = row.getCreate_time().atZone(zone).toInstant().toEpochMilli();
+            if (time > now) {
+                log.warn("位置汇总跳过时间超前的记录 - id: {}, deviceId: {}, createTime: {}",
+                        row.getId(), row.getDevice_id(), row.getCreate_time());
+                lastId = row.getId();
+                continue;
+            }
+            double lat = row.getLatitude().doubleValue();
+            double lon = row.getLongitude().doubleValue();
+            String deviceId = row.getDevice_id();
+            boolean inside = insideFence(deviceId, lat, lon);
+
+            double distance = 0;
+            double speed = 0;
+            long fenceMs = 0;
+            LastPoint last = lastPoint(deviceId, zone);
+            if (last != null && time > last.time) {
+                long dt = time - last.time;
+                distance = GeoUtils.haversineMeters(last.latitude, last.longitude, lat, lon);
+                if (dt <= maxGapMs) {
+                    speed = distance * 1000 / dt;
+                    fenceMs = last.inside ? dt : 0;
+                }
+            }
+            if (last == null || time >= last.time) {
+                lastPoints.put(deviceId, new LastPoint(lat, lon, time, inside));
+            }
+
+            LocalDateTime createTime = row.getCreate_time();
+            accumulate(buckets, deviceId, LocationRollup.HOUR, createTime.truncatedTo(ChronoUnit.HOURS),
+                    createTime, lat, lon, distance, speed, fenceMs);
+            accumulate(buckets, deviceId, LocationRollup.DAY, createTime.truncatedTo(ChronoUnit.DAYS),
+                    createTime, lat, lon, distance, speed, fenceMs);
+            lastId = row.getId();
+            processed++;
+        }
+
+        if (lastId == watermark) {
+            return 0;
+        }
+        List<LocationRollup> rollups = new ArrayList<>(buckets.size());
+        for (Accumulator accumulator : buckets.values()) {
+            rollups.add(accumulator.toRollup());
+        }
+        for (int from = 0; from < rollups.size(); from += UPSERT_CHUNK_SIZE) {
+            locationRollupMapper.upsertBatch(rollups.subList(from, Math.min(from + UPSERT_CHUNK_SIZE, rollups.size())));
+        }
+        locationRollupMapper.upsertWatermark(WATERMARK_NAME, lastId);
+        lastWrittenWatermark = lastId;
+        log.debug("位置汇总 - 处理 {} 行, 更新 {} 个汇总行, 水位 {}", processed, rollups.size(), lastId);
+        return processed;
+    }
+
+    @Override
+    public List<LocationRollup> listRollups(String deviceId, String granularity, LocalDateTime start, LocalDateTime end) {
+        return locationRollupMapper.selectRollups(deviceId, granularity, start, end);
+    }
+
+    private LastPoint lastPoint(String deviceId, ZoneId zone) {
+        LastPoint last = lastPoints.get(deviceId);
+        if (last != null || lastPoints.containsKey(deviceId)) {
+            return last;
+        }
+        LocationRollup previous = locationRollupMapper.selectLastHourly(deviceId);
+        if (previous != null) {
+            last = new LastPoint(previous.getLastLat(), previous.getLastLon(),
+                    previous.getLastTime().atZone(zone).toInstant().toEpochMilli(),
+                    insideFence(deviceId, previous.getLastLat(), previous.getLastLon()));
+        }
+        lastPoints.put(deviceId, last);
+        return last;
+    }
+
+    private boolean insideFence(String deviceId, double latitude, double longitude) {
+        List<GeoFenceCache.PreparedFence> fences = geoFenceCache.getFences(deviceId);
+        if (fences.isEmpty()) {
+            return false;
+        }
+        Point point = geometryFactory.createPoint(new Coordinate(longitude, latitude));
+        for (GeoFenceCache.PreparedFence fence : fences) {
+            if (fence.getPrepared().contains(point)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void accumulate(Map<String, Accumulator> buckets, String deviceId, String granularity,
+                                   LocalDateTime bucketStart, LocalDateTime time, double lat, double lon,
+                                   double distance, double speed, long fenceMs) {
+        String key = deviceId + '|' + granularity + '|' + bucketStart;
+        buckets.computeIfAbsent(key, k -> new Accumulator(deviceId, granularity, bucketStart, time, lat, lon))
+                .add(time, lat, lon, distance, speed, fenceMs);
+    }
+
+    private static final class LastPoint {
+        private final double latitude;
+        private final double longitude;
+        private final long time;
+        private final boolean inside;
+
+        private LastPoint(double latitude, double longitude, long time, boolean inside) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.time = time;
+            this.inside = inside;
+        }
+    }
+
+    /**
+     * 一批内单个汇总行的增量
+     */
+    private static final class Accumulator {
+        private final String deviceId;
+        private final String granularity;
+        private final LocalDateTime bucketStart;
+        private int count;
+        private double minLat;
+        private double maxLat;
+        private double minLon;
+        private double maxLon;
+        private double distance;
+        private double maxSpeed;
+        private long fenceMs;
+        private LocalDateTime firstTime;
+        private LocalDateTime lastTime;
+        private double lastLat;
+        private double lastLon;
+
+        private Accumulator(String deviceId, String granularity, LocalDateTime bucketStart,
+                            LocalDateTime time, double lat, double lon) {
+            this.deviceId = deviceId;
+            this.granularity = granularity;
+            this.bucketStart = bucketStart;
+            this.minLat = this.maxLat = this.lastLat = lat;
+            this.minLon = this.maxLon = this.lastLon = lon;
+            this.firstTime = this.lastTime = time;
+        }
+
+        private void add(LocalDateTime time, double lat, double lon, double distance, double speed, long fenceMs) {
+            count++;
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+            this.distance += distance;
+            maxSpeed = Math.max(maxSpeed, speed);
+            this.fenceMs += fenceMs;
+            if (time.isBefore(firstTime)) {
+                firstTime = time;
+            }
+            if (!time.isBefore(lastTime)) {
+                lastTime = time;
+                lastLat = lat;
+                lastLon = lon;
+            }
+        }
+
+        private LocationRollup toRollup() {
+            LocationRollup rollup = new LocationRollup();
+            rollup.setDeviceId(deviceId);
+            rollup.setGranularity(granularity);
+            rollup.setBucketStart(bucketStart);
+            rollup.setPointCount(count);
+            rollup.setMinLat(minLat);
+            rollup.setMaxLat(maxLat);
+            rollup.setMinLon(minLon);
+            rollup.setMaxLon(maxLon);
+            rollup.setDistanceMeters(distance);
+            rollup.setMaxSpeedMps(maxSpeed);
+            rollup.setFenceSeconds(Math.round(fenceMs / 1000.0));
+            rollup.setFirstTime(firstTime);
+            rollup.setLastTime(lastTime);
+            rollup.setLastLat(lastLat);
+            rollup.setLastLon(lastLon);
+            return rollup;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.project.mapapp.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.manager.StayPointDetector;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.mapper.StayPointMapper;
+import com.project.mapapp.model.dto.alert.AlertMessage;
+import com.project.mapapp.model.entity.Alert;
+import com.project.mapapp.model.entity.Device;
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.entity.StayPoint;
+import com.project.mapapp.model.enums.AlertType;
+import com.project.mapapp.service.AlertService;
+import com.project.mapapp.service.StayPointService;
+import com.project.mapapp.service.WebSocketService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class StayPointServiceImpl extends ServiceImpl<StayPointMapper, StayPoint> implements StayPointService {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${location.stay.enabled:false}")
+    private boolean enabled;
+
+    @Value("${location.stay.sweep-interval-seconds:60}")
+    private long sweepIntervalSeconds;
+
+    /**
+     * 只有定位时间在该秒数内的实时点参与停留识别，离线补传的历史点不参与（否则会对几天前的停留报警）
+     */
+    @Value("${location.stay.live-window-seconds:120}")
+    private long liveWindowSeconds;
+
+    private final StayPointDetector stayPointDetector;
+    private final AlertService alertService;
+    private final WebSocketService webSocketService;
+    private final DeviceGuardianResolver deviceGuardianResolver;
+    private final DeviceMapper deviceMapper;
+    private ScheduledExecutorService sweeper;
+
+    public StayPointServiceImpl(StayPointDetector stayPointDetector, AlertService alertService,
+                                WebSocketService webSocketService, DeviceGuardianResolver deviceGuardianResolver,
+                                DeviceMapper deviceMapper) {
+        this.stayPointDetector = stayPointDetector;
+        this.alertService = alertService;
+        this.webSocketService = webSocketService;
+        this.deviceGuardianResolver = deviceGuardianResolver;
+        this.deviceMapper = deviceMapper;
+    }
+
+    /**
+     * 设备静默时没有新点触发停留结束，定时巡检关闭超时的停留，并把进行中的停留写入库
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stay-point-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    @Override
+    public void observe(String deviceId, List<LocationData> locations) {
+        if (!enabled) {
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long liveAfter = System.currentTimeMillis() - liveWindowSeconds * 1000;
+        for (LocationData location : locations) {
+            long time = location.getCreate_time().atZone(zone).toInstant().toEpochMilli();
+            if (time < liveAfter) {
+                continue;
+            }
+            StayPointDetector.Stay stay = stayPointDetector.observe(deviceId,
+                    location.getLatitude().doubleValue(),
+                    location.getLongitude().doubleValue(),
+                    time);
+            if (stay != null) {
+                handle(stay, zone);
+            }
+        }
+    }
+
+    private void sweep() {
+        try {
+            ZoneId zone = ZoneId.systemDefault();
+            for (StayPointDetector.Stay stay : stayPointDetector.sweep(System.currentTimeMillis())) {
+                handle(stay, zone);
+            }
+        } catch (Exception e) {
+            log.error("停留点巡检失败", e);
+        }
+    }
+
+    /**
+     * 停留的每个事件都按 (device_id, arrived_at) 写入，停留开始即落库，之后随进度和结束更新
+     */
+    private void handle(StayPointDetector.Stay stay, ZoneId zone) {
+        try {
+            saveStayPoint(stay, zone);
+            if (stay.getKind() == StayPointDetector.Stay.Kind.DWELL) {
+                raiseDwellAlert(stay.getDeviceId(), stay, zone);
+            }
+        } catch (Exception e) {
+            log.error("处理停留点失败: deviceId={}", stay.getDeviceId(), e);
+        }
+    }
+
+    @Override
+    public List<StayPoint> listStayPoints(String deviceId, LocalDateTime start, LocalDateTime end) {
+        QueryWrapper<StayPoint> query = new QueryWrapper<>();
+        query.eq("device_id", deviceId);
+        if (start != null) {
+            query.ge("arrived_at", start);
+        }
+        if (end != null) {
+            query.le("arrived_at", end);
+        }
+        query.orderByAsc("arrived_at");
+        return this.list(query);
+    }
+
+    private void saveStayPoint(StayPointDetector.Stay stay, ZoneId zone) {
+        StayPoint stayPoint = new StayPoint();
+        stayPoint.setDevice_id(stay.getDeviceId());
+        stayPoint.setLatitude(toCoordinate(stay.getLatitude()));
+        stayPoint.setLongitude(toCoordinate(stay.getLongitude()));
+        stayPoint.setArrived_at(LocalDateTime.ofInstant(Instant.ofEpochMilli(stay.getArrivedAt()), zone));
+        stayPoint.setLeft_at(LocalDateTime.ofInstant(Instant.ofEpochMilli(stay.getLastSeenAt()), zone));
+        stayPoint.setDuration_seconds((stay.getLastSeenAt() - stay.getArrivedAt()) / 1000);
+        stayPoint.setPoint_count(stay.getPoints());
+        baseMapper.upsert(stayPoint);
+    }
+
+    private void raiseDwellAlert(String deviceId, StayPointDetector.Stay stay, ZoneId zone) {
+        // 沿用围栏报警的去重：同一设备已有未处理的停留报警时不再重复产生
+        if (alertService.hasPendingAlert(deviceId, AlertType.DWELL)) {
+            return;
+        }
+        long minutes = stayPointDetector.getDwellAlertSeconds() / 60;
+        BigDecimal latitude = toCoordinate(stay.getLatitude());
+        BigDecimal longitude = toCoordinate(stay.getLongitude());
+
+        Alert alert = new Alert();
+        alert.setDevice_id(deviceId);
+        alert.setType(AlertType.DWELL);
+        alert.setMessage(String.format("设备在同一位置停留超过%d分钟", minutes));
+        alert.setLatitude(latitude);
+        alert.setLongitude(longitude);
+        alertService.createAlert(alert);
+
+        List<Long> guardianIds = deviceGuardianResolver.resolveApprovedGuardianIds(deviceId);
+        if (guardianIds.isEmpty()) {
+            log.warn("未找到设备关联的监护人: {}", deviceId);
+            return;
+        }
+        Device device = deviceMapper.selectById(deviceId);
+        String deviceName = device != null ? device.getName() : deviceId;
+        AlertMessage alertMessage = new AlertMessage(
+                AlertType.DWELL,
+                "停留报警",
+                String.format("%s已在同一位置停留超过%d分钟", deviceName, minutes),
+                longitude,
+                latitude,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(stay.getLastSeenAt()), zone).format(TIME_FORMATTER)
+        );
+        webSocketService.pushAlert(guardianIds, alertMessage);
+    }
+
+    private static BigDecimal toCoordinate(double value) {
+        return BigDecimal.valueOf(value).setScale(7, RoundingMode.HALF_UP);
+    }
+}
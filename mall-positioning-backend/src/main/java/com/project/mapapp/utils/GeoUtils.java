@@ -0,0 +1,39 @@
+package com.project.mapapp.utils;
+
+/**
+ * 地理计算工具类
+ */
+public class GeoUtils {
+
+    /**
+     * 赤道上每度对应的米数
+     */
+    public static final double METERS_PER_DEGREE = 111_320.0;
+
+    /**
+     * 地球平均半径（米）
+     */
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * 将米换算为给定纬度处的经度差（经度方向每度最短，用它换算出的角度偏保守）
+     */
+    public static double metersToLonDegrees(double meters, double latitude) {
+        double cos = Math.cos(Math.toRadians(latitude));
+        return meters / (METERS_PER_DEGREE * Math.max(cos, 1e-6));
+    }
+
+    /**
+     * 两点间的球面距离（米，haversine）
+     */
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
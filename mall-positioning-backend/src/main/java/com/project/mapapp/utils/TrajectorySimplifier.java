@@ -0,0 +1,200 @@
+package com.project.mapapp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 流式轨迹抽稀
+ * <p>
+ * 按时间顺序逐点输入，两级处理，内存只与窗口大小和 maxPoints 有关，与轨迹总点数无关：
+ * <ol>
+ *     <li>分窗 Douglas–Peucker：每攒满 windowSize 个点做一次 DP（容差单位为米），窗口末点留作下一窗口的起点，保证轨迹连续；</li>
+ *     <li>固定时间分桶：每个时间桶只保留第一个点，保留点数超过 maxPoints 时桶宽翻倍并重新归并。</li>
+ * </ol>
+ * 轨迹的首点和末点始终保留。tolerance ≤ 0 时跳过 DP，maxPoints ≤ 0 时跳过分桶。
+ */
+public class TrajectorySimplifier<T> {
+
+    private static final int DEFAULT_WINDOW_SIZE = 512;
+
+    private final double toleranceMeters;
+    private final int maxPoints;
+    private final int windowSize;
+    private final ToDoubleFunction<T> latitude;
+    private final ToDoubleFunction<T> longitude;
+    private final ToLongFunction<T> timestamp;
+
+    private final List<T> window;
+    private final List<T> kept = new ArrayList<>();
+    private long bucketMs;
+    private long lastBucket = Long.MIN_VALUE;
+    private T last;
+
+    public TrajectorySimplifier(double toleranceMeters, int maxPoints, long initialBucketMs,
+                                ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude,
+                                ToLongFunction<T> timestamp) {
+        this(toleranceMeters, maxPoints, initialBucketMs, DEFAULT_WINDOW_SIZE, latitude, longitude, timestamp);
+    }
+
+    public TrajectorySimplifier(double toleranceMeters, int maxPoints, long initialBucketMs, int windowSize,
+                                ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude,
+                                ToLongFunction<T> timestamp) {
+        this.toleranceMeters = toleranceMeters;
+        // 首末点总要保留，分桶至少留 2 个点
+        this.maxPoints = maxPoints > 0 ? Math.max(maxPoints, 2) : maxPoints;
+        this.windowSize = Math.max(windowSize, 3);
+        this.bucketMs = Math.max(initialBucketMs, 1);
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timestamp = timestamp;
+        this.window = new ArrayList<>(this.windowSize);
+    }
+
+    /**
+     * 输入下一个点，必须按时间升序
+     */
+    public void add(T point) {
+        last = point;
+        if (toleranceMeters <= 0) {
+            bucket(point);
+            return;
+        }
+        window.add(point);
+        if (window.size() >= windowSize) {
+            flushWindow(false);
+        }
+    }
+
+    /**
+     * 输入结束，返回抽稀后的点（按时间升序）
+     */
+    public List<T> finish() {
+        if (toleranceMeters > 0 && !window.isEmpty()) {
+            flushWindow(true);
+        }
+        // 末点与最后一个保留点同桶时用末点替换，保证轨迹停在真实的最后位置
+        if (last != null && (kept.isEmpty() || kept.get(kept.size() - 1) != last)) {
+            if (maxPoints > 0 && kept.size() >= maxPoints && kept.size() > 1) {
+                kept.set(kept.size() - 1, last);
+            } else {
+                kept.add(last);
+            }
+        }
+        return kept;
+    }
+
+    private void flushWindow(boolean isFinal) {
+        int n = window.size();
+        boolean[] keep = douglasPeucker();
+        int end = isFinal ? n : n - 1;
+        for (int i = 0; i < end; i++) {
+            if (keep[i]) {
+                bucket(window.get(i));
+            }
+        }
+        T carry = window.get(n - 1);
+        window.clear();
+        if (!isFinal) {
+            window.add(carry);
+        }
+    }
+
+    /**
+     * 对当前窗口做 Douglas–Peucker，首尾点总是保留；以窗口首点为原点做等距投影后按平面距离计算
+     */
+    private boolean[] douglasPeucker() {
+        int n = window.size();
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        if (n < 3) {
+            return keep;
+        }
+
+        double lat0 = latitude.applyAsDouble(window.get(0));
+        double lon0 = longitude.applyAsDouble(window.get(0));
+        double lonScale = GeoUtils.METERS_PER_DEGREE * Math.cos(Math.toRadians(lat0));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            T p = window.get(i);
+            x[i] = (longitude.applyAsDouble(p) - lon0) * lonScale;
+            y[i] = (latitude.applyAsDouble(p) - lat0) * GeoUtils.METERS_PER_DEGREE;
+        }
+
+        // 用栈代替递归
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            double maxDistance = 0;
+            int index = -1;
+            for (int i = from + 1; i < to; i++) {
+                double d = segmentDistance(x[i], y[i], x[from], y[from], x[to], y[to]);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxDistance > toleranceMeters) {
+                keep[index] = true;
+                stack[top++] = from;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = to;
+            }
+        }
+        return keep;
+    }
+
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return Math.hypot(px - ax, py - ay);
+        }
+        double t = ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+
+    private void bucket(T point) {
+        if (maxPoints <= 0) {
+            kept.add(point);
+            return;
+        }
+        long b = Math.floorDiv(timestamp.applyAsLong(point), bucketMs);
+        if (b == lastBucket) {
+            return;
+        }
+        kept.add(point);
+        lastBucket = b;
+        while (kept.size() > maxPoints) {
+            bucketMs *= 2;
+            rebucket();
+        }
+    }
+
+    /**
+     * 桶宽翻倍后重新归并已保留的点，每个新桶只留第一个
+     */
+    private void rebucket() {
+        int size = 0;
+        long previous = Long.MIN_VALUE;
+        for (T point : kept) {
+            long b = Math.floorDiv(timestamp.applyAsLong(point), bucketMs);
+            if (b != previous) {
+                kept.set(size++, point);
+                previous = b;
+            }
+        }
+        kept.subList(size, kept.size()).clear();
+        lastBucket = previous;
+    }
+}
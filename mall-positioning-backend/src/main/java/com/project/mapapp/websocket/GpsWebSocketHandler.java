@@ -9,29 +9,20 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.net.URI;
 import java.util.Arrays;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.*;
 
 @Slf4j
 @Service
 public class GpsWebSocketHandler extends TextWebSocketHandler {
-    private static final long HEARTBEAT_INTERVAL = 30; // 秒 (与前端对齐)
-    private static final long HEARTBEAT_TIMEOUT = 40;  // 秒
 
     private final WebSocketSessionManager sessionManager;
-    private final ScheduledExecutorService heartbeatExecutor;
+    private final HeartbeatWheel heartbeatWheel;
 
     @Autowired
-    public GpsWebSocketHandler(WebSocketSessionManager sessionManager) {
+    public GpsWebSocketHandler(WebSocketSessionManager sessionManager, HeartbeatWheel heartbeatWheel) {
         this.sessionManager = sessionManager;
-        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "websocket-heartbeat");
-            t.setDaemon(true);
-            return t;
-        });
+        this.heartbeatWheel = heartbeatWheel;
     }
 
     @Override
@@ -46,12 +37,14 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         }
 
         log.info("WebSocket连接建立 - wardId: {}, deviceId: {}", wardId, deviceId);
-        sessionManager.addSession(wardId, deviceId, session);
-        startHeartbeat(wardId, deviceId, session);
+        // 之后所有发送都走带出站缓冲的包装会话，心跳与业务推送不会并发写同一连接
+        WebSocketSession outbound = sessionManager.addSession(wardId, deviceId, session);
+        heartbeatWheel.register(outbound, wardId, deviceId);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        heartbeatWheel.touch(session.getId());
         String payload = message.getPayload();
         if ("heartbeat".equals(payload)) {
             log.debug("收到心跳响应 - sessionId: {}", session.getId());
@@ -60,20 +53,27 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         log.debug("收到消息: {}", payload);
     }
 
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) throws Exception {
+        heartbeatWheel.touch(session.getId());
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        heartbeatWheel.unregister(session.getId());
         Long wardId = getWardId(session);
         String deviceId = getDeviceId(session);
 
         if (wardId != null && deviceId != null) {
             log.info("WebSocket连接关闭 - wardId: {}, deviceId: {}, 状态: {}",
                     wardId, deviceId, status);
-            sessionManager.removeSession(wardId, deviceId);
+            sessionManager.removeSession(wardId, deviceId, session.getId());
         }
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) {
+        heartbeatWheel.unregister(session.getId());
         Long wardId = getWardId(session);
         String deviceId = getDeviceId(session);
 
@@ -81,7 +81,7 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
                 wardId, deviceId, exception.getMessage());
 
         if (wardId != null && deviceId != null) {
-            sessionManager.removeSession(wardId, deviceId);
+            sessionManager.removeSession(wardId, deviceId, session.getId());
         }
 
         try {
@@ -91,51 +91,6 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private void startHeartbeat(Long wardId, String deviceId, WebSocketSession session) {
-        ScheduledFuture<?> future = heartbeatExecutor.scheduleAtFixedRate(() -> {
-            try {
-                if (session.isOpen()) {
-                    // 发送Ping消息
-                    session.sendMessage(new PingMessage());
-
-                    // 发送文本心跳(兼容性)
-                    session.sendMessage(new TextMessage("heartbeat"));
-
-                    log.debug("发送心跳检测 - wardId: {}, deviceId: {}", wardId, deviceId);
-
-                    // 设置超时检测
-                    heartbeatExecutor.schedule(() -> {
-                        if (session.isOpen()) {
-                            log.warn("心跳超时 - 关闭连接 - wardId: {}, deviceId: {}", wardId, deviceId);
-                            closeSession(session, CloseStatus.SESSION_NOT_RELIABLE);
-                        }
-                    }, HEARTBEAT_TIMEOUT, TimeUnit.SECONDS);
-                }
-            } catch (IOException e) {
-                log.warn("心跳发送失败 - 关闭连接 - wardId: {}, deviceId: {}", wardId, deviceId);
-                closeSession(session, CloseStatus.SESSION_NOT_RELIABLE);
-            }
-        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
-
-        sessionManager.registerHeartbeatTask(wardId, deviceId, future);
-    }
-
-    private void closeSession(WebSocketSession session, CloseStatus status) {
-        try {
-            if (session.isOpen()) {
-                session.close(status);
-            }
-        } catch (IOException e) {
-            log.debug("关闭会话时出错", e);
-        }
-
-        Long wardId = getWardId(session);
-        String deviceId = getDeviceId(session);
-        if (wardId != null && deviceId != null) {
-            sessionManager.removeSession(wardId, deviceId);
-        }
-    }
-
     private Long getWardId(WebSocketSession session) {
         try {
             // 将字符串数组转换为流
@@ -167,7 +122,6 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
     @PreDestroy
     public void destroy() {
         try {
-            heartbeatExecutor.shutdownNow();
             sessionManager.cleanupAll();
             log.info("WebSocket处理器已关闭");
         } catch (Exception e) {
@@ -0,0 +1,194 @@
+package com.project.mapapp.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * WebSocket 心跳时间轮
+ * <p>
+ * 全部连接共用一个单线程时间轮：每个 tick 只处理当前槽位里到期的会话，
+ * 到期时若距最近一次收到消息/pong 已超过 timeout 则断开，否则发送心跳并放到下一个周期的槽位。
+ * 每个会话只有一个条目，心跳开销与到期会话数成正比，内存与连接数成正比。
+ * 槽位只由时间轮线程读写；注册和重新排期先进入无锁的待放置队列，在下一个 tick 放入槽位。
+ */
+@Slf4j
+@Component
+public class HeartbeatWheel {
+
+    @Value("${websocket.heartbeat.interval-seconds:30}")
+    private long intervalSeconds;
+
+    @Value("${websocket.heartbeat.timeout-seconds:40}")
+    private long timeoutSeconds;
+
+    @Value("${websocket.heartbeat.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${websocket.heartbeat.wheel-size:64}")
+    private int wheelSize;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+    private List<ArrayDeque<Entry>> wheel;
+    private int mask;
+    private long tick;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void init() {
+        // 槽位数取 2 的幂，便于取模
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        mask = size - 1;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "websocket-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 连接建立后注册，session 应为带出站缓冲的包装会话
+     */
+    public void register(WebSocketSession session, Long guardianId, String deviceId) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(session, guardianId, deviceId, now);
+        entry.dueAt = now + TimeUnit.SECONDS.toMillis(intervalSeconds);
+        Entry old = entries.put(session.getId(), entry);
+        if (old != null) {
+            old.cancelled = true;
+        }
+        pending.add(entry);
+    }
+
+    /**
+     * 收到客户端任意消息或 pong 时调用
+     */
+    public void touch(String sessionId) {
+        Entry entry = entries.get(sessionId);
+        if (entry != null) {
+            entry.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 连接关闭时调用，槽位中的条目在下次经过时丢弃
+     */
+    public void unregister(String sessionId) {
+        Entry entry = entries.remove(sessionId);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            ArrayDeque<Entry> bucket = wheel.get((int) (tick & mask));
+            for (int i = bucket.size(); i > 0; i--) {
+                Entry entry = bucket.poll();
+                if (entry.cancelled) {
+                    continue;
+                }
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                    bucket.add(entry);
+                    continue;
+                }
+                check(entry, now);
+            }
+            tick++;
+
+            Entry entry;
+            while ((entry = pending.poll()) != null) {
+                if (!entry.cancelled) {
+                    place(entry, now);
+                }
+            }
+        } catch (Exception e) {
+            log.error("心跳时间轮处理异常", e);
+        }
+    }
+
+    private void place(Entry entry, long now) {
+        long delayTicks = Math.max(1, (entry.dueAt - now + tickMs - 1) / tickMs);
+        wheel.get((int) ((tick + delayTicks - 1) & mask)).add(entry);
+        entry.rounds = (delayTicks - 1) / wheel.size();
+    }
+
+    private void check(Entry entry, long now) {
+        WebSocketSession session = entry.session;
+        if (!session.isOpen()) {
+            unregister(session.getId());
+            return;
+        }
+        if (now - entry.lastSeen > TimeUnit.SECONDS.toMillis(timeoutSeconds)) {
+            log.warn("心跳超时 - 关闭连接 - wardId: {}, deviceId: {}", entry.guardianId, entry.deviceId);
+            unregister(session.getId());
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                log.debug("关闭会话时出错", e);
+            }
+            return;
+        }
+        try {
+            // 发送Ping消息，并发送文本心跳(兼容性)；包装会话只入队，不阻塞时间轮线程
+            session.sendMessage(new PingMessage());
+            session.sendMessage(new TextMessage("heartbeat"));
+            log.debug("发送心跳检测 - wardId: {}, deviceId: {}", entry.guardianId, entry.deviceId);
+        } catch (Exception e) {
+            log.warn("心跳发送失败 - wardId: {}, deviceId: {}", entry.guardianId, entry.deviceId);
+        }
+        entry.dueAt = now + TimeUnit.SECONDS.toMillis(intervalSeconds);
+        pending.add(entry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        ticker.shutdownNow();
+        entries.clear();
+    }
+
+    private static final class Entry {
+        private final WebSocketSession session;
+        private final Long guardianId;
+        private final String deviceId;
+        private volatile long lastSeen;
+        private volatile boolean cancelled;
+        /**
+         * 排期字段，进入待放置队列后只由时间轮线程访问
+         */
+        private long dueAt;
+        private long rounds;
+
+        private Entry(WebSocketSession session, Long guardianId, String deviceId, long lastSeen) {
+            this.session = session;
+            this.guardianId = guardianId;
+            this.deviceId = deviceId;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
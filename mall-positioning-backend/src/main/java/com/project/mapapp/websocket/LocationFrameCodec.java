@@ -0,0 +1,133 @@
+package com.project.mapapp.websocket;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 位置帧二进制编码（WebSocket 子协议 gps-location.bin.v1）
+ * <p>
+ * 客户端握手时在 Sec-WebSocket-Protocol 中声明该子协议即启用，位置改为二进制帧下发；警报、心跳仍为文本帧。
+ * 每个二进制消息由一条或多条记录组成，记录以类型字节开头，int32 为大端序：
+ * <pre>
+ * 0x01 设备定义  varint 设备序号 | varint 长度 | UTF-8 设备ID
+ * 0x02 位置      varint 设备序号 | zigzag varint 与上一帧的时间差(ms) | int32 纬度×1e7 | int32 经度×1e7 | varint 精度(分米)
+ * </pre>
+ * 设备第一次出现时在位置记录前附带设备定义；时间差的基准在会话开始时为 0，即首帧携带完整的毫秒时间戳。
+ * 编码状态按会话保存，必须按发送顺序编码。定位时间无法解析的位置不编码，由调用方改发文本帧，不伪造时间。
+ */
+public final class LocationFrameCodec {
+
+    public static final String SUBPROTOCOL = "gps-location.bin.v1";
+
+    public static final byte RECORD_DEVICE = 0x01;
+    public static final byte RECORD_LOCATION = 0x02;
+
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private static final DateTimeFormatter PLAIN_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private LocationFrameCodec() {
+    }
+
+    public static Encoder newEncoder() {
+        return new Encoder();
+    }
+
+    /**
+     * 单个会话的编码器，非线程安全
+     */
+    public static final class Encoder {
+        private final Map<String, Integer> deviceIndexes = new HashMap<>();
+        private long lastTimestamp;
+
+        private Encoder() {
+        }
+
+        /**
+         * 编码一个位置；定位时间缺失或无法解析时返回 null，编码状态不变
+         */
+        public BinaryMessage encode(LocationResponseDTO location) {
+            Long timestamp = toEpochMillis(location.getCreateTime());
+            if (timestamp == null) {
+                return null;
+            }
+            String deviceId = location.getDeviceId() != null ? location.getDeviceId() : "";
+            Integer index = deviceIndexes.get(deviceId);
+            byte[] deviceBytes = null;
+            if (index == null) {
+                index = deviceIndexes.size();
+                deviceIndexes.put(deviceId, index);
+                deviceBytes = deviceId.getBytes(StandardCharsets.UTF_8);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(40 + (deviceBytes != null ? deviceBytes.length : 0));
+            if (deviceBytes != null) {
+                buffer.put(RECORD_DEVICE);
+                writeVarint(buffer, index);
+                writeVarint(buffer, deviceBytes.length);
+                buffer.put(deviceBytes);
+            }
+
+            buffer.put(RECORD_LOCATION);
+            writeVarint(buffer, index);
+            writeVarint(buffer, zigzag(timestamp - lastTimestamp));
+            buffer.putInt(toFixed(location.getLatitude()));
+            buffer.putInt(toFixed(location.getLongitude()));
+            writeVarint(buffer, toDecimeters(location.getAccuracy()));
+            lastTimestamp = timestamp;
+
+            buffer.flip();
+            return new BinaryMessage(buffer);
+        }
+    }
+
+    static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int toFixed(BigDecimal degrees) {
+        return degrees != null ? (int) Math.round(degrees.doubleValue() * COORDINATE_SCALE) : 0;
+    }
+
+    private static long toDecimeters(BigDecimal meters) {
+        return meters != null ? Math.max(0, Math.round(meters.doubleValue() * 10)) : 0;
+    }
+
+    /**
+     * 位置推送的时间为 ISO 格式（LocalDateTime.toString），历史查询为 yyyy-MM-dd HH:mm:ss，两种都接受
+     */
+    private static Long toEpochMillis(String createTime) {
+        if (createTime == null) {
+            return null;
+        }
+        LocalDateTime time;
+        try {
+            time = LocalDateTime.parse(createTime);
+        } catch (DateTimeParseException e) {
+            try {
+                time = LocalDateTime.parse(createTime, PLAIN_TIME_FORMATTER);
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,297 @@
+package com.project.mapapp.websocket;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带出站缓冲的会话
+ * <p>
+ * 调用方只负责入队并立即返回，实际发送由共享的发送线程池完成，同一会话同一时刻只有一个线程在发送。
+ * 消息分两级：警报、心跳等普通消息优先发送且从不丢弃，积压超过上限说明客户端已无法跟上，直接断开让其重连；
+ * 位置帧和运动状态等事件帧可丢弃，队列满时丢掉最旧的一帧（监护人只关心最新状态）。
+ * 单次发送超过 sendTimeLimitMs 仍未完成时同样断开，避免一个慢客户端长期占用发送线程：Tomcat 容器下把阻塞发送超时
+ * 设为同一值，由发送线程自己超时返回；其他容器由 {@link #checkSendTimeout} 的定时巡检关闭会话来中断阻塞写。
+ * 握手协商了二进制子协议的会话，位置帧在发送线程中按顺序编码为二进制帧（见 {@link LocationFrameCodec}）。
+ */
+@Slf4j
+public class OutboundSessionDecorator extends WebSocketSessionDecorator {
+
+    /**
+     * Tomcat 阻塞发送超时的会话属性（毫秒），默认 20s
+     */
+    private static final String TOMCAT_BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final Executor sender;
+    private final int alertQueueLimit;
+    private final int locationQueueLimit;
+    private final long sendTimeLimitMs;
+
+    private final Object queueLock = new Object();
+    private final Deque<WebSocketMessage<?>> alertQueue = new ArrayDeque<>();
+    private final Deque<LocationFrame> locationQueue = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * 二进制子协议的编码状态，仅在持有 draining 标记的发送线程中使用；文本会话为 null
+     */
+    private final LocationFrameCodec.Encoder binaryEncoder;
+
+    /**
+     * 当前这次发送的开始时间（毫秒），空闲时为 0
+     */
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public OutboundSessionDecorator(WebSocketSession delegate, Executor sender,
+                                    int alertQueueLimit, int locationQueueLimit, long sendTimeLimitMs) {
+        super(delegate);
+        this.sender = sender;
+        this.alertQueueLimit = alertQueueLimit;
+        this.locationQueueLimit = locationQueueLimit;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.binaryEncoder = LocationFrameCodec.SUBPROTOCOL.equals(delegate.getAcceptedProtocol())
+                ? LocationFrameCodec.newEncoder() : null;
+        applyBlockingSendTimeout(delegate, sendTimeLimitMs);
+    }
+
+    private static void applyBlockingSendTimeout(WebSocketSession delegate, long timeoutMs) {
+        WebSocketSession session = WebSocketSessionDecorator.unwrap(delegate);
+        if (!(session instanceof NativeWebSocketSession)) {
+            return;
+        }
+        javax.websocket.Session nativeSession =
+                ((NativeWebSocketSession) session).getNativeSession(javax.websocket.Session.class);
+        if (nativeSession != null) {
+            nativeSession.getUserProperties().put(TOMCAT_BLOCKING_SEND_TIMEOUT, timeoutMs);
+        }
+    }
+
+    /**
+     * 普通消息（警报、心跳），不会被丢弃
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        enqueue(message, null);
+    }
+
+    /**
+     * 位置帧，积压时丢弃最旧的；json 为共享的文本帧，二进制会话改用 location 编码
+     */
+    public void sendLocation(TextMessage json, LocationResponseDTO location) {
+        enqueue(null, new LocationFrame(json, location));
+    }
+
+    /**
+     * 可丢弃的事件帧，与位置帧共用队列，二进制会话也按文本帧发送
+     */
+    public void sendDroppable(TextMessage frame) {
+        enqueue(null, new LocationFrame(frame, null));
+    }
+
+    public boolean isBinary() {
+        return binaryEncoder != null;
+    }
+
+    private void enqueue(WebSocketMessage<?> message, LocationFrame location) {
+        if (limitExceeded || !isOpen()) {
+            return;
+        }
+        boolean overflow = false;
+        synchronized (queueLock) {
+            if (location != null) {
+                if (locationQueue.size() >= locationQueueLimit) {
+                    locationQueue.pollFirst();
+                    dropped.incrementAndGet();
+                }
+                locationQueue.addLast(location);
+            } else if (alertQueue.size() >= alertQueueLimit) {
+                overflow = true;
+            } else {
+                alertQueue.addLast(message);
+            }
+        }
+        if (overflow) {
+            limitExceeded("警报队列积压超过 " + alertQueueLimit + " 条");
+            return;
+        }
+        if (checkSendTimeout(System.currentTimeMillis())) {
+            return;
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * 当前这次发送超过 sendTimeLimitMs 时关闭会话，关闭底层连接会让阻塞中的发送线程抛错返回
+     *
+     * @return 是否因超时关闭
+     */
+    public boolean checkSendTimeout(long now) {
+        long start = sendStartTime;
+        if (limitExceeded || start <= 0 || now - start <= sendTimeLimitMs) {
+            return false;
+        }
+        limitExceeded("单次发送超过 " + sendTimeLimitMs + "ms");
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!limitExceeded) {
+                WebSocketMessage<?> message;
+                LocationFrame location = null;
+                synchronized (queueLock) {
+                    message = alertQueue.pollFirst();
+                    if (message == null) {
+                        location = locationQueue.pollFirst();
+                    }
+                }
+                if (location != null) {
+                    message = location.json;
+                    if (binaryEncoder != null && location.location != null) {
+                        BinaryMessage binary = binaryEncoder.encode(location.location);
+                        if (binary != null) {
+                            message = binary;
+                        } else {
+                            log.warn("位置时间无法解析，改发文本帧 - sessionId: {}, createTime: {}",
+                                    getId(), location.location.getCreateTime());
+                        }
+                    }
+                }
+                if (message == null) {
+                    break;
+                }
+                if (!isOpen()) {
+                    clearQueues();
+                    break;
+                }
+                sendStartTime = System.currentTimeMillis();
+                try {
+                    getDelegate().sendMessage(message);
+                    sent.incrementAndGet();
+                    bytesSent.addAndGet(message.getPayloadLength());
+                } catch (IOException | IllegalStateException e) {
+                    log.warn("消息发送失败，关闭会话 - sessionId: {}, {}", getId(), e.getMessage());
+                    closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                    break;
+                } finally {
+                    sendStartTime = 0;
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记与新消息入队之间存在竞争，补一次检查
+        if (!limitExceeded && getQueueDepth() > 0) {
+            scheduleDrain();
+        }
+    }
+
+    private void limitExceeded(String reason) {
+        limitExceeded = true;
+        log.warn("会话出站缓冲超限，关闭会话 - sessionId: {}, 原因: {}", getId(), reason);
+        closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            close(status);
+        } catch (Exception e) {
+            log.debug("关闭会话时出错", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        clearQueues();
+        super.close(status);
+    }
+
+    private void clearQueues() {
+        synchronized (queueLock) {
+            alertQueue.clear();
+            locationQueue.clear();
+        }
+    }
+
+    public int getAlertQueueDepth() {
+        synchronized (queueLock) {
+            return alertQueue.size();
+        }
+    }
+
+    public int getLocationQueueDepth() {
+        synchronized (queueLock) {
+            return locationQueue.size();
+        }
+    }
+
+    public int getQueueDepth() {
+        synchronized (queueLock) {
+            return alertQueue.size() + locationQueue.size();
+        }
+    }
+
+    /**
+     * 当前这次发送已持续的时间（毫秒），空闲时为 0
+     */
+    public long getSendTimeMs() {
+        long start = sendStartTime;
+        return start > 0 ? System.currentTimeMillis() - start : 0;
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    private static final class LocationFrame {
+        private final TextMessage json;
+        private final LocationResponseDTO location;
+
+        private LocationFrame(TextMessage json, LocationResponseDTO location) {
+            this.json = json;
+            this.location = location;
+        }
+    }
+}
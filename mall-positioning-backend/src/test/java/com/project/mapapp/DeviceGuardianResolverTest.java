@@ -0,0 +1,71 @@
+package com.project.mapapp;
+
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.mapper.ApplicationMapper;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.model.entity.Application;
+import com.project.mapapp.model.enums.ApplicationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DeviceGuardianResolverTest {
+
+    private ApplicationMapper applicationMapper;
+    private DeviceGuardianResolver resolver;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        applicationMapper = mock(ApplicationMapper.class);
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.opsForValue()).thenReturn(mock(ValueOperations.class));
+        resolver = new DeviceGuardianResolver(mock(DeviceMapper.class), applicationMapper, redis);
+    }
+
+    private static Application application(long guardianId, ApplicationStatus status) {
+        Application application = new Application();
+        application.setGuardian_id(String.valueOf(guardianId));
+        application.setStatus(status.getCode());
+        return application;
+    }
+
+    @Test
+    void pendingAndRejectedApplicantsAreNeverAuthorized() {
+        when(applicationMapper.selectList(any())).thenReturn(Arrays.asList(
+                application(7, ApplicationStatus.REJECTED),
+                application(8, ApplicationStatus.PENDING_CONFIRMATION)));
+
+        assertTrue(resolver.resolveApprovedGuardianIds("dev-1").isEmpty());
+        // 只用于上报落库的监护人仍沿用最早的一条申请
+        assertEquals(Long.valueOf(7), resolver.resolvePrimaryGuardianId("dev-1"));
+    }
+
+    @Test
+    void approvedGuardiansInApplicationOrder() {
+        when(applicationMapper.selectList(any())).thenReturn(Arrays.asList(
+                application(7, ApplicationStatus.REJECTED),
+                application(9, ApplicationStatus.APPROVED),
+                application(8, ApplicationStatus.PENDING_CONFIRMATION),
+                application(5, ApplicationStatus.APPROVED)));
+
+        assertEquals(Arrays.asList(9L, 5L), resolver.resolveApprovedGuardianIds("dev-2"));
+        assertEquals(Long.valueOf(9), resolver.resolvePrimaryGuardianId("dev-2"));
+    }
+
+    @Test
+    void deviceWithoutApplications() {
+        when(applicationMapper.selectList(any())).thenReturn(Collections.emptyList());
+
+        assertTrue(resolver.resolveApprovedGuardianIds("dev-3").isEmpty());
+        assertNull(resolver.resolvePrimaryGuardianId("dev-3"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.project.mapapp;
+
+import com.project.mapapp.manager.GeoFenceCache;
+import com.project.mapapp.manager.GeoFenceSpatialIndex;
+import com.project.mapapp.manager.GeoFenceStateTracker;
+import com.project.mapapp.mapper.GeoFenceMapper;
+import com.project.mapapp.model.entity.GeoFence;
+import com.project.mapapp.model.enums.FenceTransition;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 共享围栏经空间索引参与越界校验
+ */
+public class GeoFenceSharedZoneTest {
+
+    private static GeoFence fence(long id, String deviceId, double lon, double lat) {
+        GeoFence fence = new GeoFence();
+        fence.setId(id);
+        fence.setDevice_id(deviceId);
+        fence.setName("f" + id);
+        // 约 100m 见方
+        fence.setCoordinates(String.format("[[%s,%s],[%s,%s],[%s,%s],[%s,%s]]",
+                lon, lat, lon + 0.001, lat, lon + 0.001, lat + 0.001, lon, lat + 0.001));
+        return fence;
+    }
+
+    private static List<Long> ids(List<GeoFenceCache.PreparedFence> fences) {
+        return fences.stream().map(f -> f.getFence().getId()).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void sharedFencesNearOnlyReturnsNearbySharedFences() {
+        GeoFenceMapper mapper = mock(GeoFenceMapper.class);
+        when(mapper.selectList(null)).thenReturn(Arrays.asList(
+                fence(1, null, 120.0, 30.0),
+                fence(2, "dev-1", 120.0, 30.0),
+                fence(3, null, 121.0, 31.0)));
+        GeoFenceSpatialIndex index = new GeoFenceSpatialIndex(mapper, new GeoFenceCache(mapper));
+        ReflectionTestUtils.setField(index, "rebuildThreshold", 64);
+        index.load();
+
+        assertEquals(Arrays.asList(1L), ids(index.sharedFencesNear(30.0005, 120.0005, 0.0001)));
+        // 外包矩形之外但在不确定带内，仍作为候选
+        assertEquals(Arrays.asList(1L), ids(index.sharedFencesNear(30.0005, 119.99995, 0.0001)));
+        assertTrue(index.sharedFencesNear(30.5, 120.5, 0.0001).isEmpty());
+
+        // 增量中的新共享围栏同样可以查到，删除后不再返回
+        index.upsert(fence(4, null, 120.0002, 30.0002));
+        assertEquals(Arrays.asList(1L, 4L), ids(index.sharedFencesNear(30.0005, 120.0005, 0.0001)));
+        index.remove(1L);
+        assertEquals(Arrays.asList(4L), ids(index.sharedFencesNear(30.0005, 120.0005, 0.0001)));
+        assertNull(index.get(1L));
+    }
+
+    @Test
+    void sharedFenceExitOnlyAfterEntering() {
+        GeoFenceStateTracker tracker = new GeoFenceStateTracker();
+        ReflectionTestUtils.setField(tracker, "confirmPoints", 2);
+        ReflectionTestUtils.setField(tracker, "minMarginMeters", 10d);
+
+        // 从未进入过的共享围栏：确认在外面不产生 EXIT，也不再需要继续观测
+        assertNull(tracker.observe("dev-1", 1L, false, () -> false, false));
+        assertNull(tracker.observe("dev-1", 1L, false, () -> false, false));
+        assertTrue(tracker.engagedFences("dev-1").isEmpty());
+
+        assertNull(tracker.observe("dev-1", 1L, true, () -> false, false));
+        assertEquals(FenceTransition.ENTER, tracker.observe("dev-1", 1L, true, () -> false, false));
+        assertEquals(Arrays.asList(1L), tracker.engagedFences("dev-1"));
+        assertNull(tracker.observe("dev-1", 1L, false, () -> false, false));
+        assertEquals(FenceTransition.EXIT, tracker.observe("dev-1", 1L, false, () -> false, false));
+        assertTrue(tracker.engagedFences("dev-1").isEmpty());
+
+        // 设备自己的围栏沿用原有行为：一开始就在外面也报警
+        assertNull(tracker.observe("dev-1", 2L, false, () -> false, true));
+        assertEquals(FenceTransition.EXIT, tracker.observe("dev-1", 2L, false, () -> false, true));
+
+        // 共享围栏删除后清除所有设备上的状态
+        tracker.observe("dev-2", 1L, true, () -> false, false);
+        tracker.resetFence(null, 1L);
+        assertTrue(tracker.engagedFences("dev-2").isEmpty());
+    }
+}
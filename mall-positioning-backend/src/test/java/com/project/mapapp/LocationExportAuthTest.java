@@ -0,0 +1,108 @@
+package com.project.mapapp;
+
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.controller.LocationDataController;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.manager.DeviceGuardianResolver;
+import com.project.mapapp.mapper.ApplicationMapper;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.model.entity.Application;
+import com.project.mapapp.model.entity.User;
+import com.project.mapapp.model.enums.ApplicationStatus;
+import com.project.mapapp.service.DeviceService;
+import com.project.mapapp.service.LocationDataService;
+import com.project.mapapp.service.LocationExportService;
+import com.project.mapapp.service.LocationRollupService;
+import com.project.mapapp.service.StayPointService;
+import com.project.mapapp.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 轨迹导出只允许管理员和申请已通过的监护人
+ */
+public class LocationExportAuthTest {
+
+    private static final String DEVICE_ID = "dev-1";
+    private static final long APPROVED = 1;
+    private static final long PENDING = 2;
+    private static final long REJECTED = 3;
+
+    private UserService userService;
+    private LocationExportService locationExportService;
+    private LocationDataController controller;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ApplicationMapper applicationMapper = mock(ApplicationMapper.class);
+        when(applicationMapper.selectList(any())).thenReturn(Arrays.asList(
+                application(REJECTED, ApplicationStatus.REJECTED),
+                application(PENDING, ApplicationStatus.PENDING_CONFIRMATION),
+                application(APPROVED, ApplicationStatus.APPROVED)));
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.opsForValue()).thenReturn(mock(ValueOperations.class));
+        DeviceGuardianResolver resolver = new DeviceGuardianResolver(mock(DeviceMapper.class), applicationMapper, redis);
+
+        userService = mock(UserService.class);
+        locationExportService = mock(LocationExportService.class);
+        LocationDataService locationDataService = mock(LocationDataService.class);
+        controller = new LocationDataController(locationDataService, userService, locationDataService,
+                mock(DeviceService.class), resolver, locationExportService, mock(LocationRollupService.class),
+                mock(StayPointService.class));
+        request = new MockHttpServletRequest();
+    }
+
+    private static Application application(long guardianId, ApplicationStatus status) {
+        Application application = new Application();
+        application.setGuardian_id(String.valueOf(guardianId));
+        application.setWard_device_id(DEVICE_ID);
+        application.setStatus(status.getCode());
+        return application;
+    }
+
+    private void login(long userId) {
+        User user = new User();
+        user.setId(userId);
+        when(userService.getLoginUser(request)).thenReturn(user);
+        when(userService.isAdmin(request)).thenReturn(false);
+    }
+
+    private void assertNoAuth(long userId) {
+        login(userId);
+        BusinessException e = assertThrows(BusinessException.class, () -> controller.exportLocationHistory(
+                DEVICE_ID, null, null, "csv", request, new MockHttpServletResponse()));
+        assertEquals(ErrorCode.NO_AUTH_ERROR.getCode(), e.getCode());
+    }
+
+    @Test
+    void pendingApplicantIsRejected() throws Exception {
+        assertNoAuth(PENDING);
+        verify(locationExportService, never()).exportHistory(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void rejectedApplicantIsRejected() throws Exception {
+        assertNoAuth(REJECTED);
+        verify(locationExportService, never()).exportHistory(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void approvedGuardianCanExport() throws Exception {
+        login(APPROVED);
+        controller.exportLocationHistory(DEVICE_ID, null, null, "csv", request, new MockHttpServletResponse());
+        verify(locationExportService).exportHistory(eq(DEVICE_ID), any(), any(), any(), any());
+    }
+}
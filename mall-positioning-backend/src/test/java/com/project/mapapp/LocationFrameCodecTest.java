@@ -0,0 +1,165 @@
+package com.project.mapapp;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.websocket.LocationFrameCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocationFrameCodecTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+    private static LocationResponseDTO location(String deviceId, String latitude, String longitude,
+                                                String accuracy, LocalDateTime time) {
+        LocationResponseDTO dto = new LocationResponseDTO();
+        dto.setDeviceId(deviceId);
+        dto.setLatitude(new BigDecimal(latitude));
+        dto.setLongitude(new BigDecimal(longitude));
+        dto.setAccuracy(accuracy != null ? new BigDecimal(accuracy) : null);
+        dto.setCreateTime(time.toString());
+        return dto;
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void roundTripAcrossDevicesAndOutOfOrderTimestamps() {
+        List<LocationResponseDTO> sent = new ArrayList<>();
+        sent.add(location("dev-a", "30.2741502", "120.1551567", "12.5", START));
+        sent.add(location("dev-b", "-33.8688197", "-151.2092955", "3", START.plusSeconds(2)));
+        // 比上一帧早：时间差为负
+        sent.add(location("dev-a", "30.2741900", "120.1551000", "8", START.plusSeconds(1)));
+        sent.add(location("设备-丙", "0", "0", null, START.minusHours(1)));
+        sent.add(location("dev-b", "-33.8688000", "-151.2093000", "4.04", START.plusMinutes(5)));
+
+        LocationFrameCodec.Encoder encoder = LocationFrameCodec.newEncoder();
+        Decoder decoder = new Decoder();
+        for (LocationResponseDTO location : sent) {
+            decoder.decode(encoder.encode(location));
+        }
+
+        assertEquals(sent.size(), decoder.frames.size());
+        for (int i = 0; i < sent.size(); i++) {
+            LocationResponseDTO expected = sent.get(i);
+            Frame actual = decoder.frames.get(i);
+            assertEquals(expected.getDeviceId(), actual.deviceId, "第 " + i + " 帧");
+            assertEquals(millis(LocalDateTime.parse(expected.getCreateTime())), actual.timestamp, "第 " + i + " 帧");
+            assertEquals(expected.getLatitude().doubleValue(), actual.latitude, 1e-7);
+            assertEquals(expected.getLongitude().doubleValue(), actual.longitude, 1e-7);
+            double accuracy = expected.getAccuracy() != null ? expected.getAccuracy().doubleValue() : 0;
+            assertEquals(accuracy, actual.accuracy, 0.05);
+        }
+        assertEquals(3, decoder.devices.size());
+    }
+
+    @Test
+    void deviceDefinitionOnlyOnFirstAppearance() {
+        LocationFrameCodec.Encoder encoder = LocationFrameCodec.newEncoder();
+        byte[] first = bytes(encoder.encode(location("dev-a", "30", "120", "5", START)));
+        byte[] second = bytes(encoder.encode(location("dev-a", "30", "120", "5", START.plusSeconds(1))));
+        byte[] other = bytes(encoder.encode(location("dev-b", "30", "120", "5", START.plusSeconds(2))));
+
+        assertEquals(LocationFrameCodec.RECORD_DEVICE, first[0]);
+        assertEquals(LocationFrameCodec.RECORD_LOCATION, second[0]);
+        assertEquals(LocationFrameCodec.RECORD_DEVICE, other[0]);
+        // 已知设备：类型 + 序号 + 1s 的 zigzag 时间差(2 字节) + 两个 int32 + 精度
+        assertEquals(1 + 1 + 2 + 8 + 1, second.length);
+        // 新设备的序号递增
+        assertEquals(1, other[1]);
+    }
+
+    @Test
+    void malformedTimeIsNotEncodedAndLeavesStateUntouched() {
+        LocationFrameCodec.Encoder encoder = LocationFrameCodec.newEncoder();
+        Decoder decoder = new Decoder();
+        decoder.decode(encoder.encode(location("dev-a", "30", "120", "5", START)));
+
+        LocationResponseDTO malformed = location("dev-b", "30", "120", "5", START);
+        malformed.setCreateTime("not-a-time");
+        assertNull(encoder.encode(malformed));
+        malformed.setCreateTime(null);
+        assertNull(encoder.encode(malformed));
+
+        // 历史查询格式同样可以编码；时间差基准和设备序号都没有被跳过的记录改变
+        LocationResponseDTO plain = location("dev-b", "30", "120", "5", START);
+        plain.setCreateTime("2024-01-01 08:00:05");
+        decoder.decode(encoder.encode(plain));
+        assertEquals(millis(START.plusSeconds(5)), decoder.frames.get(1).timestamp);
+        assertEquals("dev-b", decoder.frames.get(1).deviceId);
+    }
+
+    private static byte[] bytes(BinaryMessage message) {
+        ByteBuffer payload = message.getPayload().duplicate();
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    private static final class Frame {
+        private String deviceId;
+        private long timestamp;
+        private double latitude;
+        private double longitude;
+        private double accuracy;
+    }
+
+    /**
+     * 按协议文档实现的客户端解码，与编码器互相独立
+     */
+    private static final class Decoder {
+        private final Map<Long, String> devices = new HashMap<>();
+        private final List<Frame> frames = new ArrayList<>();
+        private long lastTimestamp;
+
+        void decode(BinaryMessage message) {
+            ByteBuffer buffer = message.getPayload().duplicate();
+            while (buffer.hasRemaining()) {
+                byte type = buffer.get();
+                if (type == LocationFrameCodec.RECORD_DEVICE) {
+                    long index = readVarint(buffer);
+                    byte[] id = new byte[(int) readVarint(buffer)];
+                    buffer.get(id);
+                    assertNull(devices.put(index, new String(id, StandardCharsets.UTF_8)), "设备重复定义");
+                } else if (type == LocationFrameCodec.RECORD_LOCATION) {
+                    Frame frame = new Frame();
+                    frame.deviceId = devices.get(readVarint(buffer));
+                    assertNotNull(frame.deviceId, "位置记录引用了未定义的设备");
+                    long raw = readVarint(buffer);
+                    lastTimestamp += (raw >>> 1) ^ -(raw & 1);
+                    frame.timestamp = lastTimestamp;
+                    frame.latitude = buffer.getInt() / 1e7;
+                    frame.longitude = buffer.getInt() / 1e7;
+                    frame.accuracy = readVarint(buffer) / 10.0;
+                    frames.add(frame);
+                } else {
+                    fail("未知记录类型 " + type);
+                }
+            }
+        }
+
+        private static long readVarint(ByteBuffer buffer) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
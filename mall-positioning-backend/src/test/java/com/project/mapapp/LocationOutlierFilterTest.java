@@ -0,0 +1,87 @@
+package com.project.mapapp;
+
+import com.project.mapapp.manager.LocationOutlierFilter;
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.utils.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocationOutlierFilterTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+    private LocationOutlierFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new LocationOutlierFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "maxAccuracyMeters", 200d);
+        ReflectionTestUtils.setField(filter, "maxSpeedMps", 20d);
+        ReflectionTestUtils.setField(filter, "windowSize", 5);
+        ReflectionTestUtils.setField(filter, "resetGapSeconds", 600L);
+        ReflectionTestUtils.setField(filter, "maxConsecutiveRejects", 5);
+    }
+
+    private static LocationData point(double northMeters, double accuracy, long seconds) {
+        LocationData location = new LocationData();
+        location.setLatitude(BigDecimal.valueOf(30.0 + northMeters / GeoUtils.METERS_PER_DEGREE));
+        location.setLongitude(BigDecimal.valueOf(120.0));
+        location.setAccuracy(BigDecimal.valueOf(accuracy));
+        location.setCreate_time(START.plusSeconds(seconds));
+        return location;
+    }
+
+    @Test
+    void constantSpeedBelowLimitIsAccepted() {
+        // 10m/s、5s 一个点，带 ±3m 噪声，只有限速的一半
+        Random random = new Random(42);
+        for (int i = 0; i < 120; i++) {
+            double north = i * 50 + random.nextGaussian() * 3;
+            assertTrue(filter.accept("d1", point(north, 5, i * 5L)), "第 " + i + " 个点被误判");
+        }
+    }
+
+    @Test
+    void teleportIsRejectedUntilConsecutiveLimit() {
+        long t = 0;
+        for (int i = 0; i < 10; i++, t += 5) {
+            assertTrue(filter.accept("d2", point(i * 10, 5, t)));
+        }
+        // 5km 外的跳点：连续 maxConsecutiveRejects 个都被丢弃
+        for (int i = 0; i < 5; i++, t += 5) {
+            assertFalse(filter.accept("d2", point(5000, 5, t)));
+        }
+        // 之后认为设备确实到了新位置，以当前点重建窗口
+        assertTrue(filter.accept("d2", point(5000, 5, t)));
+        t += 5;
+        assertTrue(filter.accept("d2", point(5010, 5, t)));
+        t += 5;
+        // 再跳回原处又是跳点
+        assertFalse(filter.accept("d2", point(90, 5, t)));
+    }
+
+    @Test
+    void singleSpikeDoesNotShiftReference() {
+        long t = 0;
+        for (int i = 0; i < 10; i++, t += 5) {
+            assertTrue(filter.accept("d3", point(i * 10, 5, t)));
+        }
+        assertFalse(filter.accept("d3", point(2000, 5, t)));
+        t += 5;
+        assertTrue(filter.accept("d3", point(110, 5, t)));
+    }
+
+    @Test
+    void lowAccuracyIsRejected() {
+        assertFalse(filter.accept("d4", point(0, 500, 0)));
+        assertTrue(filter.accept("d4", point(0, 20, 5)));
+    }
+}
@@ -0,0 +1,85 @@
+package com.project.mapapp;
+
+import com.project.mapapp.utils.PolylineCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PolylineCodecTest {
+
+    @Test
+    void matchesReferencePolyline6() {
+        // Google 文档的示例轨迹，精度 6 的结果与 OSRM polyline6 文档一致
+        PolylineCodec.Encoder encoder = PolylineCodec.newEncoder();
+        encoder.add(38.5, -120.2, 1_700_000_000_000L);
+        encoder.add(40.7, -120.95, 1_700_000_005_000L);
+        encoder.add(43.252, -126.453, 1_700_000_004_000L);
+
+        assertEquals("_izlhA~rlgdF_{geC~ywl@_kwzCn`{nI", encoder.polyline());
+        assertArrayEquals(new long[]{1_700_000_000_000L, 5_000L, -1_000L}, encoder.timestamps());
+        assertEquals(3, encoder.size());
+    }
+
+    @Test
+    void decodeRestoresPointsAndTimestamps() {
+        Random random = new Random(7);
+        PolylineCodec.Encoder encoder = PolylineCodec.newEncoder();
+        List<double[]> points = new ArrayList<>();
+        double lat = -33.8688197;
+        double lon = 151.2092955;
+        long time = 1_700_000_000_000L;
+        // 超过时间戳数组的初始容量
+        for (int i = 0; i < 500; i++) {
+            lat += random.nextGaussian() * 1e-3;
+            lon += random.nextGaussian() * 1e-3;
+            time += 1000 + random.nextInt(5000);
+            encoder.add(lat, lon, time);
+            points.add(new double[]{lat, lon, time});
+        }
+
+        List<double[]> decoded = decode(encoder.polyline());
+        long[] timestamps = encoder.timestamps();
+        assertEquals(points.size(), decoded.size());
+        assertEquals(points.size(), timestamps.length);
+        long restored = 0;
+        for (int i = 0; i < points.size(); i++) {
+            double[] expected = points.get(i);
+            assertEquals(expected[0], decoded.get(i)[0], 0.5e-6 + 1e-12);
+            assertEquals(expected[1], decoded.get(i)[1], 0.5e-6 + 1e-12);
+            restored = i == 0 ? timestamps[0] : restored + timestamps[i];
+            assertEquals((long) expected[2], restored);
+        }
+    }
+
+    /**
+     * 按算法描述实现的解码，对应前端 polyline.decode(str, 6)
+     */
+    private static List<double[]> decode(String polyline) {
+        List<double[]> points = new ArrayList<>();
+        long lat = 0;
+        long lon = 0;
+        int index = 0;
+        while (index < polyline.length()) {
+            long[] value = new long[2];
+            for (int k = 0; k < 2; k++) {
+                long result = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = polyline.charAt(index++) - 63;
+                    result |= (long) (b & 0x1F) << shift;
+                    shift += 5;
+                } while (b >= 0x20);
+                value[k] = (result >>> 1) ^ -(result & 1);
+            }
+            lat += value[0];
+            lon += value[1];
+            points.add(new double[]{lat / 1e6, lon / 1e6});
+        }
+        return points;
+    }
+}
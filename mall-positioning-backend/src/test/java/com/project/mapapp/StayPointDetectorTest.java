@@ -0,0 +1,86 @@
+package com.project.mapapp;
+
+import com.project.mapapp.manager.StayPointDetector;
+import com.project.mapapp.utils.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StayPointDetectorTest {
+
+    private StayPointDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new StayPointDetector();
+        ReflectionTestUtils.setField(detector, "radiusMeters", 50d);
+        ReflectionTestUtils.setField(detector, "minStaySeconds", 300L);
+        ReflectionTestUtils.setField(detector, "dwellAlertSeconds", 1200L);
+        ReflectionTestUtils.setField(detector, "closeAfterSeconds", 600L);
+    }
+
+    private StayPointDetector.Stay observe(String deviceId, double northMeters, long seconds) {
+        return detector.observe(deviceId, 30.0 + northMeters / GeoUtils.METERS_PER_DEGREE, 120.0, seconds * 1000);
+    }
+
+    @Test
+    void stayOpensDwellsAndClosesWhenDeviceLeaves() {
+        long t = 0;
+        for (; t < 300; t += 60) {
+            assertNull(observe("d1", 0, t));
+        }
+        StayPointDetector.Stay opened = observe("d1", 5, t);
+        assertEquals(StayPointDetector.Stay.Kind.OPENED, opened.getKind());
+        assertEquals(0, opened.getArrivedAt());
+        for (t += 60; t < 1200; t += 60) {
+            assertNull(observe("d1", 5, t));
+        }
+        assertEquals(StayPointDetector.Stay.Kind.DWELL, observe("d1", 5, t).getKind());
+
+        StayPointDetector.Stay closed = observe("d1", 1000, t + 60);
+        assertEquals(StayPointDetector.Stay.Kind.CLOSED, closed.getKind());
+        assertEquals(0, closed.getArrivedAt());
+        assertEquals(t * 1000, closed.getLastSeenAt());
+    }
+
+    @Test
+    void silentDeviceIsClosedBySweep() {
+        for (long t = 0; t <= 360; t += 60) {
+            observe("d2", 0, t);
+        }
+        // 停留仍在进行：产生 PROGRESS，同一批点不会重复产生
+        List<StayPointDetector.Stay> events = detector.sweep(400_000);
+        assertEquals(1, events.size());
+        assertEquals(StayPointDetector.Stay.Kind.PROGRESS, events.get(0).getKind());
+        assertTrue(detector.sweep(500_000).isEmpty());
+
+        // 静默超过 close-after-seconds 后结束并移出内存
+        events = detector.sweep(360_000 + 600_001);
+        assertEquals(1, events.size());
+        assertEquals(StayPointDetector.Stay.Kind.CLOSED, events.get(0).getKind());
+        assertEquals(360_000, events.get(0).getLastSeenAt());
+        assertEquals(0, detector.size());
+    }
+
+    @Test
+    void gapLongerThanCloseAfterEndsStay() {
+        for (long t = 0; t <= 360; t += 60) {
+            observe("d3", 0, t);
+        }
+        StayPointDetector.Stay closed = observe("d3", 0, 360 + 601);
+        assertEquals(StayPointDetector.Stay.Kind.CLOSED, closed.getKind());
+        assertEquals(360_000, closed.getLastSeenAt());
+    }
+
+    @Test
+    void shortVisitProducesNoEvents() {
+        assertNull(observe("d4", 0, 0));
+        assertNull(observe("d4", 10, 60));
+        assertNull(observe("d4", 1000, 120));
+        assertTrue(detector.sweep(10_000_000).isEmpty());
+    }
+}
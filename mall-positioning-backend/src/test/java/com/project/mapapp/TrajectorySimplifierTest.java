@@ -0,0 +1,68 @@
+package com.project.mapapp;
+
+import com.project.mapapp.utils.TrajectorySimplifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrajectorySimplifierTest {
+
+    private static TrajectorySimplifier<double[]> simplifier(double tolerance, int maxPoints, long bucketMs, int windowSize) {
+        return new TrajectorySimplifier<>(tolerance, maxPoints, bucketMs, windowSize,
+                p -> p[0], p -> p[1], p -> (long) p[2]);
+    }
+
+    @Test
+    void straightLineCollapsesToEndpointsAcrossWindows() {
+        TrajectorySimplifier<double[]> s = simplifier(1, 0, 1000, 16);
+        double[] first = null;
+        double[] last = null;
+        for (int i = 0; i < 1000; i++) {
+            double[] p = {30.0, 120.0 + i * 1e-5, i * 1000};
+            if (first == null) {
+                first = p;
+            }
+            last = p;
+            s.add(p);
+        }
+        List<double[]> result = s.finish();
+        // 相邻窗口共用一个点，每个窗口只留首点，最后再加上末点
+        assertTrue(result.size() <= 1000 / 15 + 2);
+        assertSame(first, result.get(0));
+        assertSame(last, result.get(result.size() - 1));
+    }
+
+    @Test
+    void cornerIsKept() {
+        TrajectorySimplifier<double[]> s = simplifier(5, 0, 1000, 512);
+        for (int i = 0; i <= 100; i++) {
+            s.add(new double[]{30.0, 120.0 + i * 1e-5, i * 1000});
+        }
+        double[] corner = {30.0, 120.0 + 100 * 1e-5, 100_000};
+        for (int i = 1; i <= 100; i++) {
+            s.add(new double[]{30.0 + i * 1e-5, 120.0 + 100 * 1e-5, (100 + i) * 1000});
+        }
+        List<double[]> result = s.finish();
+        assertEquals(3, result.size());
+        assertArrayEquals(corner, result.get(1));
+    }
+
+    @Test
+    void bucketingRespectsMaxPoints() {
+        TrajectorySimplifier<double[]> s = simplifier(0, 50, 1, 512);
+        double[] last = null;
+        for (int i = 0; i < 10_000; i++) {
+            last = new double[]{30.0 + Math.sin(i) * 1e-3, 120.0 + Math.cos(i) * 1e-3, i * 1000};
+            s.add(last);
+        }
+        List<double[]> result = s.finish();
+        assertTrue(result.size() <= 50);
+        assertEquals(0, result.get(0)[2]);
+        assertSame(last, result.get(result.size() - 1));
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i)[2] > result.get(i - 1)[2]);
+        }
+    }
+}